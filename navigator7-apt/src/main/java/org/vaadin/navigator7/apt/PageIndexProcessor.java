@@ -0,0 +1,143 @@
+package org.vaadin.navigator7.apt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/** Writes the index of the @Page classes in META-INF/navigator7/pages (one fully qualified class name per line, sorted),
+ * that NavigatorConfig.registerPages(String packageName) reads at runtime instead of scanning the classpath.
+ *
+ * With incremental compilation, the entries of the existing index are kept if their class still exists and still has @Page.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+@SupportedAnnotationTypes(PageIndexProcessor.PAGE_ANNOTATION)
+public class PageIndexProcessor extends AbstractProcessor {
+
+    static final String PAGE_ANNOTATION = "org.vaadin.navigator7.Page";
+    static final String PAGE_INDEX = "META-INF/navigator7/pages";  // Same as NavigatorConfig.PAGE_INDEX
+
+    private final Set<String> pageClassNames = new TreeSet<String>();
+    private boolean existingIndexRead = false;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (!existingIndexRead) {
+            readExistingIndex();
+            existingIndexRead = true;
+        }
+
+        TypeElement pageAnnotation = processingEnv.getElementUtils().getTypeElement(PAGE_ANNOTATION);
+        if (pageAnnotation != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(pageAnnotation)) {
+                if (isIndexable(element)) {
+                    pageClassNames.add(processingEnv.getElementUtils().getBinaryName((TypeElement)element).toString());
+                }
+            }
+        }
+
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        return false;  // Other processors (ParamProcessor) also look at @Page.
+    }
+
+    /** Only classes that Class.forName() can load and that the Navigator can instantiate. */
+    private boolean isIndexable(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return false;
+        }
+        TypeElement type = (TypeElement)element;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)
+                || (type.getNestingKind() != NestingKind.TOP_LEVEL && !type.getModifiers().contains(Modifier.STATIC))) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "@Page class "+type+" is not indexed for NavigatorConfig.registerPages(String) because it cannot be instantiated (abstract or inner class).", type);
+            return false;
+        }
+        return true;
+    }
+
+    /** Keeps the pages of the previous compilation that still exist (incremental build: their source has not been given to this compilation). */
+    private void readExistingIndex() {
+        Reader reader = null;
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", PAGE_INDEX);
+            reader = existing.openReader(true);
+            BufferedReader lines = new BufferedReader(reader);
+            String line;
+            while ((line = lines.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                TypeElement type = processingEnv.getElementUtils().getTypeElement(line.replace('$', '.'));
+                if (type != null && hasPageAnnotation(type)) {
+                    pageClassNames.add(line);
+                }
+            }
+        } catch (IOException e) {
+            // No previous index (full build). The exception type depends on the compiler.
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Nothing to do.
+                }
+            }
+        }
+    }
+
+    private boolean hasPageAnnotation(TypeElement type) {
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            if (((TypeElement)annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(PAGE_ANNOTATION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        if (pageClassNames.isEmpty()) {
+            return;
+        }
+        PrintWriter out = null;
+        try {
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", PAGE_INDEX);
+            out = new PrintWriter(new OutputStreamWriter(index.openOutputStream(), "UTF-8"));
+            out.println("# @Page classes, generated by " + PageIndexProcessor.class.getName() + ". Read by NavigatorConfig.registerPages(String).");
+            for (String className : pageClassNames) {
+                out.println(className);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + PAGE_INDEX + ": " + e);
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+}
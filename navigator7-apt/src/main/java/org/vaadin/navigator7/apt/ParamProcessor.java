@@ -0,0 +1,357 @@
+package org.vaadin.navigator7.apt;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/** Compile time companion of ParamInjector.
+ * For every class having @Param fields (declared or inherited), this processor:
+ * - reports the schema problems (two fields at the same position, position holes, two fields with the same name) as compile errors,
+ *   instead of having ParamInjector throw them at runtime;
+ * - generates [PageClass]_ParamsInjector and [PageClass]_FragmentWriter in the package of the class.
+ *   They read and write the fields with plain Java code. ParamClassDescriptor picks them up at runtime, so that navigation and
+ *   link building don't use reflection.
+ *
+ * Nothing is generated (ParamInjector then uses MethodHandles) for nested classes and for classes having a @Param field
+ * that the generated code could not access (private, or inherited from another package and not public).
+ *
+ * The processor refers to the annotations by name, so it does not depend on the navigator7 jar (nor on Vaadin).
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+@SupportedAnnotationTypes({ParamProcessor.PARAM_ANNOTATION, ParamProcessor.PAGE_ANNOTATION})
+public class ParamProcessor extends AbstractProcessor {
+
+    static final String PARAM_ANNOTATION = "org.vaadin.navigator7.uri.Param";
+    static final String PAGE_ANNOTATION = "org.vaadin.navigator7.Page";
+    static final String PARAMS_INJECTOR = "org.vaadin.navigator7.uri.ParamsInjector";
+    static final String FRAGMENT_WRITER = "org.vaadin.navigator7.uri.FragmentWriter";
+    static final String INJECTOR_SUFFIX = "_ParamsInjector";  // Same as ParamsInjector.GENERATED_SUFFIX
+    static final String WRITER_SUFFIX = "_FragmentWriter";    // Same as FragmentWriter.GENERATED_SUFFIX
+
+    /** Primitive types having specialized (non boxing) methods in ParamsInjector and FragmentWriter. */
+    private static final TypeKind[] SPECIALIZED_KINDS = {TypeKind.INT, TypeKind.LONG, TypeKind.DOUBLE, TypeKind.BOOLEAN};
+    private static final String[] SPECIALIZED_NAMES = {"Int", "Long", "Double", "Boolean"};
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        // A class may only inherit its @Param fields => we look at all the classes of the round, not only the annotated ones.
+        Set<TypeElement> classes = new LinkedHashSet<TypeElement>();
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            collectClasses(type, classes);
+        }
+
+        for (TypeElement type : classes) {
+            List<ParamFieldInfo> fields = findParamFields(type);
+            if (fields.isEmpty()) {
+                continue;
+            }
+            if (checkSchema(type, fields)
+                    && type.getNestingKind() == NestingKind.TOP_LEVEL
+                    && type.getKind() == ElementKind.CLASS
+                    && areAccessible(type, fields)) {
+                generate(type, fields);
+            }
+        }
+        return false;  // We don't claim the annotations, other processors may need them.
+    }
+
+    private void collectClasses(TypeElement type, Set<TypeElement> classes) {
+        classes.add(type);
+        for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collectClasses(member, classes);
+        }
+    }
+
+
+    /** Same order as ParamInjector.findAnnotatedFields(): fields of the class first, then those of the superclasses. */
+    private List<ParamFieldInfo> findParamFields(TypeElement type) {
+        List<ParamFieldInfo> result = new ArrayList<ParamFieldInfo>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                AnnotationMirror param = findAnnotation(field, PARAM_ANNOTATION);
+                if (param != null) {
+                    result.add(new ParamFieldInfo(current, field, param));
+                }
+            }
+            TypeMirror superType = current.getSuperclass();
+            current = superType.getKind() == TypeKind.DECLARED ? (TypeElement)((DeclaredType)superType).asElement() : null;
+        }
+        return result;
+    }
+
+    private AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement)mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+
+    /** Same checks as ParamClassDescriptor, at compile time.
+     * @return false if an error has been reported. */
+    private boolean checkSchema(TypeElement type, List<ParamFieldInfo> fields) {
+        boolean ok = true;
+        SortedMap<Integer, ParamFieldInfo> posFieldMap = new TreeMap<Integer, ParamFieldInfo>();
+        Map<String, ParamFieldInfo> namedFieldMap = new HashMap<String, ParamFieldInfo>();
+        for (ParamFieldInfo info : fields) {
+            if (info.pos > -1) {
+                ParamFieldInfo existing = posFieldMap.get(info.pos);
+                if (existing != null) {
+                    error(type, info, "Two fields annotated with @Param have the same position (@Param(pos="+info.pos+")): "
+                            + existing + " and " + info + ". Please change the position of one of them.");
+                    ok = false;
+                } else {
+                    posFieldMap.put(info.pos, info);
+                }
+            } else {
+                ParamFieldInfo existing = namedFieldMap.get(info.name);
+                if (existing != null) {
+                    error(type, info, "Two named fields (non positional) annotated with @Param have the same name ("+info.name+"): "
+                            + existing + " and " + info + ". Did you forget to specify a position @Param(pos=...) on one of them?");
+                    ok = false;
+                } else {
+                    namedFieldMap.put(info.name, info);
+                }
+            }
+        }
+
+        int expectedPos = 0;
+        for (ParamFieldInfo info : posFieldMap.values()) {  // Sorted by position.
+            if (info.pos != expectedPos) {
+                error(type, info, "The field " + info + " is annotated @Param(pos="+info.pos+"), " +
+                        "but no other field is annotated with @Param(pos="+(info.pos-1)+"). These kind of position holes are forbidden.");
+                ok = false;
+                break;
+            }
+            expectedPos++;
+        }
+        return ok;
+    }
+
+    /** Reports on the field if it's declared in that class, else on the class (inherited field). */
+    private void error(TypeElement type, ParamFieldInfo info, String message) {
+        Element target = info.declaringType.equals(type) ? info.field : type;
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "In class " + type.getQualifiedName() + ", " + message, target);
+    }
+
+
+    /** Can the generated code (in the package of type, not a subclass) read and write all the fields? */
+    private boolean areAccessible(TypeElement type, List<ParamFieldInfo> fields) {
+        PackageElement typePackage = processingEnv.getElementUtils().getPackageOf(type);
+        for (ParamFieldInfo info : fields) {
+            Set<Modifier> modifiers = info.field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+                return false;
+            }
+            boolean samePackage = processingEnv.getElementUtils().getPackageOf(info.declaringType).equals(typePackage);
+            if (!samePackage && !(modifiers.contains(Modifier.PUBLIC) && info.declaringType.getModifiers().contains(Modifier.PUBLIC))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void generate(TypeElement type, List<ParamFieldInfo> fields) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String simpleName = type.getSimpleName().toString();
+        String typeName = type.getQualifiedName().toString();
+        try {
+            writeInjector(type, packageName, simpleName, typeName, fields);
+            writeWriter(type, packageName, simpleName, typeName, fields);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot generate the @Param accessors of " + typeName + ": " + e, type);
+        }
+    }
+
+    private PrintWriter openSource(TypeElement type, String packageName, String className) throws IOException {
+        String qualifiedName = packageName.length() == 0 ? className : packageName + "." + className;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        PrintWriter out = new PrintWriter(file.openWriter());
+        if (packageName.length() > 0) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        return out;
+    }
+
+    private void writeKeys(PrintWriter out, List<ParamFieldInfo> fields) {
+        out.println("    private static final String[] FIELD_KEYS = {");
+        for (ParamFieldInfo info : fields) {
+            out.println("        \"" + info.getKey() + "\",");
+        }
+        out.println("    };");
+        out.println();
+        out.println("    @Override");
+        out.println("    public String[] getFieldKeys() {");
+        out.println("        return FIELD_KEYS.clone();");
+        out.println("    }");
+        out.println();
+    }
+
+    private void writeInjector(TypeElement type, String packageName, String simpleName, String typeName, List<ParamFieldInfo> fields) throws IOException {
+        String className = simpleName + INJECTOR_SUFFIX;
+        PrintWriter out = openSource(type, packageName, className);
+        out.println("/** Generated by the navigator7-apt annotation processor from " + typeName + ". Don't edit. */");
+        out.println("public final class " + className + " implements " + PARAMS_INJECTOR + " {");
+        out.println();
+        writeKeys(out, fields);
+
+        out.println("    @Override");
+        out.println("    @SuppressWarnings(\"unchecked\")");
+        out.println("    public void set(Object page, int index, Object value) {");
+        out.println("        switch (index) {");
+        for (int i = 0; i < fields.size(); i++) {
+            ParamFieldInfo info = fields.get(i);
+            out.println("        case " + i + ": ((" + typeName + ")page)." + info.field.getSimpleName()
+                    + " = (" + info.getBoxedTypeName() + ")value; return;");
+        }
+        out.println("        default: throw new IndexOutOfBoundsException(\"No @Param field at index \" + index + \" in " + typeName + "\");");
+        out.println("        }");
+        out.println("    }");
+
+        for (int k = 0; k < SPECIALIZED_KINDS.length; k++) {
+            String primitive = SPECIALIZED_NAMES[k].toLowerCase();
+            out.println();
+            out.println("    @Override");
+            out.println("    public void set" + SPECIALIZED_NAMES[k] + "(Object page, int index, " + primitive + " value) {");
+            out.println("        switch (index) {");
+            for (int i = 0; i < fields.size(); i++) {
+                ParamFieldInfo info = fields.get(i);
+                if (info.field.asType().getKind() == SPECIALIZED_KINDS[k]) {
+                    out.println("        case " + i + ": ((" + typeName + ")page)." + info.field.getSimpleName() + " = value; return;");
+                }
+            }
+            out.println("        default: throw new IllegalArgumentException(\"No " + primitive + " @Param field at index \" + index + \" in " + typeName + "\");");
+            out.println("        }");
+            out.println("    }");
+        }
+        out.println("}");
+        out.close();
+    }
+
+    private void writeWriter(TypeElement type, String packageName, String simpleName, String typeName, List<ParamFieldInfo> fields) throws IOException {
+        String className = simpleName + WRITER_SUFFIX;
+        PrintWriter out = openSource(type, packageName, className);
+        out.println("/** Generated by the navigator7-apt annotation processor from " + typeName + ". Don't edit. */");
+        out.println("public final class " + className + " implements " + FRAGMENT_WRITER + " {");
+        out.println();
+        writeKeys(out, fields);
+
+        out.println("    @Override");
+        out.println("    public Object get(Object page, int index) {");
+        out.println("        switch (index) {");
+        for (int i = 0; i < fields.size(); i++) {
+            ParamFieldInfo info = fields.get(i);
+            out.println("        case " + i + ": return ((" + typeName + ")page)." + info.field.getSimpleName() + ";");
+        }
+        out.println("        default: throw new IndexOutOfBoundsException(\"No @Param field at index \" + index + \" in " + typeName + "\");");
+        out.println("        }");
+        out.println("    }");
+
+        for (int k = 0; k < SPECIALIZED_KINDS.length; k++) {
+            String primitive = SPECIALIZED_NAMES[k].toLowerCase();
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + primitive + " get" + SPECIALIZED_NAMES[k] + "(Object page, int index) {");
+            out.println("        switch (index) {");
+            for (int i = 0; i < fields.size(); i++) {
+                ParamFieldInfo info = fields.get(i);
+                if (info.field.asType().getKind() == SPECIALIZED_KINDS[k]) {
+                    out.println("        case " + i + ": return ((" + typeName + ")page)." + info.field.getSimpleName() + ";");
+                }
+            }
+            out.println("        default: throw new IllegalArgumentException(\"No " + primitive + " @Param field at index \" + index + \" in " + typeName + "\");");
+            out.println("        }");
+            out.println("    }");
+        }
+        out.println("}");
+        out.close();
+    }
+
+
+
+    /** The @Param attributes of one field, read from the source. */
+    private class ParamFieldInfo {
+        final TypeElement declaringType;
+        final VariableElement field;
+        final int pos;
+        final String name;
+
+        ParamFieldInfo(TypeElement declaringType, VariableElement field, AnnotationMirror param) {
+            this.declaringType = declaringType;
+            this.field = field;
+            int pos = -1;  // Default of @Param.pos()
+            String name = "";
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : param.getElementValues().entrySet()) {
+                String attribute = entry.getKey().getSimpleName().toString();
+                if ("pos".equals(attribute)) {
+                    pos = ((Number)entry.getValue().getValue()).intValue();
+                } else if ("name".equals(attribute)) {
+                    name = (String)entry.getValue().getValue();
+                }
+            }
+            this.pos = pos;
+            this.name = "".equals(name) ? field.getSimpleName().toString() : name;
+        }
+
+        /** Same as ParamClassDescriptor.getFieldKey(): binary name of the declaring class + "#" + field name. */
+        String getKey() {
+            return processingEnv.getElementUtils().getBinaryName(declaringType) + "#" + field.getSimpleName();
+        }
+
+        /** Type to cast an Object value to, before assigning it to the field. */
+        String getBoxedTypeName() {
+            TypeMirror type = field.asType();
+            if (type.getKind().isPrimitive()) {
+                type = processingEnv.getTypeUtils().boxedClass((PrimitiveType)type).asType();
+            }
+            return processingEnv.getTypeUtils().erasure(type).toString();
+        }
+
+        @Override
+        public String toString() {
+            return declaringType.getQualifiedName() + "." + field.getSimpleName();
+        }
+    }
+}
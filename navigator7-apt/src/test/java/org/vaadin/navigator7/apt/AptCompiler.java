@@ -0,0 +1,125 @@
+package org.vaadin.navigator7.apt;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/** Runs an annotation processor on in-memory sources (without compiling them: -proc:only), for the processor tests.
+ * The annotations are declared by the tests themselves (see ANNOTATIONS): the processors only know them by name.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+class AptCompiler {
+
+    /** Same names and attributes as in the navigator7 jar. */
+    static final String[] ANNOTATIONS = {
+        "org/vaadin/navigator7/Page.java",
+            "package org.vaadin.navigator7;\n" +
+            "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n" +
+            "public @interface Page { String uriName() default \"\"; boolean crawlable() default false; }",
+        "org/vaadin/navigator7/uri/Param.java",
+            "package org.vaadin.navigator7.uri;\n" +
+            "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n" +
+            "public @interface Param { boolean required() default false; int pos() default -1; String name() default \"\"; }",
+        "org/vaadin/navigator7/uri/ParamsInjector.java",
+            "package org.vaadin.navigator7.uri; public interface ParamsInjector {}",
+        "org/vaadin/navigator7/uri/FragmentWriter.java",
+            "package org.vaadin.navigator7.uri; public interface FragmentWriter {}",
+    };
+
+    final File sourceOutput;  // Generated sources.
+    final File classOutput;   // Generated resources (and classes, if compile()).
+    final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+
+    AptCompiler() throws IOException {
+        File root = Files.createTempDirectory("navigator7-apt").toFile();
+        sourceOutput = new File(root, "generated");
+        classOutput = new File(root, "classes");
+        sourceOutput.mkdirs();
+        classOutput.mkdirs();
+    }
+
+    /** Runs processor on the annotations and on the given sources (path, code, path, code...).
+     * @param procOnly false to also compile the sources into classOutput (i.e. for the next incremental compilation).
+     * @return true if no error has been reported. */
+    boolean run(Processor processor, boolean procOnly, String... pathsAndCodes) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, Locale.ENGLISH, Charset.forName("UTF-8"));
+
+        List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+        List<String> all = new ArrayList<String>(Arrays.asList(pathsAndCodes));
+        all.addAll(Arrays.asList(ANNOTATIONS));
+        for (int i = 0; i < all.size(); i += 2) {
+            units.add(new Source(all.get(i), all.get(i + 1)));
+        }
+        List<String> options = new ArrayList<String>(Arrays.asList(
+                "-s", sourceOutput.getPath(), "-d", classOutput.getPath(), "-classpath", classOutput.getPath()));
+        if (procOnly) {
+            options.add("-proc:only");
+        }
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, collector, options, null, units);
+        task.setProcessors(Arrays.asList(processor));
+        boolean success = task.call();
+        fileManager.close();
+        diagnostics.clear();
+        diagnostics.addAll(collector.getDiagnostics());
+        return success;
+    }
+
+    /** Messages of the given kind, in the order reported. */
+    List<String> messages(Diagnostic.Kind kind) {
+        List<String> result = new ArrayList<String>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == kind) {
+                result.add(diagnostic.getMessage(Locale.ENGLISH));
+            }
+        }
+        return result;
+    }
+
+    /** null if the processor did not generate that source. */
+    String generatedSource(String path) throws IOException {
+        return read(new File(sourceOutput, path));
+    }
+
+    /** null if the processor did not generate that resource. */
+    String generatedResource(String path) throws IOException {
+        return read(new File(classOutput, path));
+    }
+
+    private static String read(File file) throws IOException {
+        return file.exists() ? new String(Files.readAllBytes(file.toPath()), "UTF-8") : null;
+    }
+
+
+    private static class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String path, String code) {
+            super(URI.create("string:///" + path), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
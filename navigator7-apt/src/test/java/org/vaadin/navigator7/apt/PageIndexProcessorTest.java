@@ -0,0 +1,94 @@
+package org.vaadin.navigator7.apt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageIndexProcessorTest {
+
+    private static final String INDEX = "META-INF/navigator7/pages";
+
+    private AptCompiler compiler;
+
+    @Before
+    public void setUp() throws Exception {
+        compiler = new AptCompiler();
+    }
+
+    /** Lines of the index, without the header comment. */
+    private List<String> indexedPages() throws Exception {
+        String index = compiler.generatedResource(INDEX);
+        List<String> result = new ArrayList<String>();
+        for (String line : index.split("\n")) {
+            line = line.trim();
+            if (line.length() > 0 && !line.startsWith("#")) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+
+    @Test
+    public void indexIsSortedWithHeader() throws Exception {
+        assertTrue(compiler.run(new PageIndexProcessor(), true,
+                "example/ZPage.java", "package example; @org.vaadin.navigator7.Page public class ZPage {}",
+                "example/APage.java", "package example; @org.vaadin.navigator7.Page(uriName=\"a\") public class APage {\n" +
+                                      "  @org.vaadin.navigator7.Page public static class Nested {}\n" +
+                                      "}",
+                "example/NotAPage.java", "package example; public class NotAPage {}"));
+
+        assertTrue(compiler.generatedResource(INDEX).startsWith("#"));
+        List<String> pages = indexedPages();
+        assertEquals(3, pages.size());
+        assertEquals("example.APage", pages.get(0));
+        assertEquals("example.APage$Nested", pages.get(1));  // Binary name, for Class.forName().
+        assertEquals("example.ZPage", pages.get(2));
+    }
+
+    @Test
+    public void notInstantiableClassesAreWarnedAndSkipped() throws Exception {
+        assertTrue(compiler.run(new PageIndexProcessor(), true,
+                "example/AbstractPage.java", "package example; @org.vaadin.navigator7.Page public abstract class AbstractPage {}",
+                "example/Outer.java", "package example; public class Outer { @org.vaadin.navigator7.Page public class Inner {} }",
+                "example/RealPage.java", "package example; @org.vaadin.navigator7.Page public class RealPage extends AbstractPage {}"));
+
+        assertEquals(2, compiler.messages(Diagnostic.Kind.WARNING).size());
+        List<String> pages = indexedPages();
+        assertEquals(1, pages.size());
+        assertEquals("example.RealPage", pages.get(0));
+    }
+
+    @Test
+    public void noPageNoIndex() throws Exception {
+        assertTrue(compiler.run(new PageIndexProcessor(), true,
+                "example/NotAPage.java", "package example; public class NotAPage {}"));
+        assertNull(compiler.generatedResource(INDEX));
+    }
+
+    /** Only the changed sources are given to an incremental compilation: the pages of the previous index that still exist are kept. */
+    @Test
+    public void incrementalBuildMergesPreviousIndex() throws Exception {
+        assertTrue(compiler.run(new PageIndexProcessor(), false,
+                "example/APage.java", "package example; @org.vaadin.navigator7.Page public class APage {}",
+                "example/DeletedPage.java", "package example; @org.vaadin.navigator7.Page public class DeletedPage {}"));
+        assertEquals(2, indexedPages().size());
+        assertTrue(new File(compiler.classOutput, "example/DeletedPage.class").delete());
+
+        assertTrue(compiler.run(new PageIndexProcessor(), false,
+                "example/BPage.java", "package example; @org.vaadin.navigator7.Page public class BPage {}"));
+        List<String> pages = indexedPages();
+        assertEquals(2, pages.size());
+        assertEquals("example.APage", pages.get(0));
+        assertEquals("example.BPage", pages.get(1));
+    }
+}
@@ -0,0 +1,125 @@
+package org.vaadin.navigator7.apt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import javax.tools.Diagnostic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParamProcessorTest {
+
+    private AptCompiler compiler;
+
+    @Before
+    public void setUp() throws Exception {
+        compiler = new AptCompiler();
+    }
+
+    private boolean process(String path, String code) throws Exception {
+        return compiler.run(new ParamProcessor(), true, path, code);
+    }
+
+
+    @Test
+    public void generatesInjectorAndWriter() throws Exception {
+        assertTrue(process("example/ProductPage.java",
+                "package example;\n" +
+                "import org.vaadin.navigator7.uri.Param;\n" +
+                "@org.vaadin.navigator7.Page public class ProductPage {\n" +
+                "  @Param(pos=0, required=true) long id;\n" +
+                "  @Param(pos=1) public String slug;\n" +
+                "  @Param boolean preview;\n" +
+                "}"));
+        assertEquals(0, compiler.messages(Diagnostic.Kind.ERROR).size());
+
+        String injector = compiler.generatedSource("example/ProductPage_ParamsInjector.java");
+        assertNotNull(injector);
+        assertTrue(injector.contains("public final class ProductPage_ParamsInjector implements org.vaadin.navigator7.uri.ParamsInjector"));
+        assertTrue(injector.contains("\"example.ProductPage#id\""));
+        assertTrue(injector.contains("((example.ProductPage)page).id = value; return;"));
+        assertTrue(injector.contains("((example.ProductPage)page).preview = value; return;"));
+
+        String writer = compiler.generatedSource("example/ProductPage_FragmentWriter.java");
+        assertNotNull(writer);
+        assertTrue(writer.contains("public final class ProductPage_FragmentWriter implements org.vaadin.navigator7.uri.FragmentWriter"));
+        assertTrue(writer.contains("return ((example.ProductPage)page).slug;"));
+    }
+
+    @Test
+    public void inheritedFieldsAreGenerated() throws Exception {
+        assertTrue(compiler.run(new ParamProcessor(), true,
+                "example/BasePage.java",
+                "package example; public class BasePage { @org.vaadin.navigator7.uri.Param(pos=0) protected int page; }",
+                "example/ListPage.java",
+                "package example; public class ListPage extends BasePage { @org.vaadin.navigator7.uri.Param String sort; }"));
+
+        String injector = compiler.generatedSource("example/ListPage_ParamsInjector.java");
+        assertNotNull(injector);
+        assertTrue(injector.contains("\"example.BasePage#page\""));
+        assertTrue(injector.contains("\"example.ListPage#sort\""));
+    }
+
+    @Test
+    public void samePositionIsAnError() throws Exception {
+        assertErrorContains("have the same position (@Param(pos=0))",
+                "package example; public class DupPos {\n" +
+                "  @org.vaadin.navigator7.uri.Param(pos=0) int a;\n" +
+                "  @org.vaadin.navigator7.uri.Param(pos=0) int b;\n" +
+                "}");
+    }
+
+    @Test
+    public void sameNameIsAnError() throws Exception {
+        assertErrorContains("have the same name (a)",
+                "package example; public class DupName {\n" +
+                "  @org.vaadin.navigator7.uri.Param int a;\n" +
+                "  @org.vaadin.navigator7.uri.Param(name=\"a\") int other;\n" +
+                "}");
+    }
+
+    @Test
+    public void positionHoleIsAnError() throws Exception {
+        assertErrorContains("position holes are forbidden",
+                "package example; public class Hole {\n" +
+                "  @org.vaadin.navigator7.uri.Param(pos=0) int a;\n" +
+                "  @org.vaadin.navigator7.uri.Param(pos=2) int c;\n" +
+                "}");
+    }
+
+    private void assertErrorContains(String expected, String code) throws Exception {
+        String className = code.substring(code.indexOf("class ") + 6, code.indexOf(" {"));
+        assertTrue(!process("example/" + className + ".java", code));
+        List<String> errors = compiler.messages(Diagnostic.Kind.ERROR);
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains(expected));
+        assertNull(compiler.generatedSource("example/" + className + "_ParamsInjector.java"));
+    }
+
+    /** Reflection (ParamFieldAccessor) stays in charge when the generated code could not access the field. */
+    @Test
+    public void inaccessibleFieldsAreNotGenerated() throws Exception {
+        assertTrue(process("example/PrivatePage.java",
+                "package example; public class PrivatePage { @org.vaadin.navigator7.uri.Param private int a; }"));
+        assertNull(compiler.generatedSource("example/PrivatePage_ParamsInjector.java"));
+        assertNull(compiler.generatedSource("example/PrivatePage_FragmentWriter.java"));
+    }
+
+    /** Nested classes are checked but not generated. */
+    @Test
+    public void nestedClasses() throws Exception {
+        assertTrue(!process("example/Outer.java",
+                "package example; public class Outer {\n" +
+                "  public static class Ok { @org.vaadin.navigator7.uri.Param int a; }\n" +
+                "  public static class Bad { @org.vaadin.navigator7.uri.Param(pos=1) int a; }\n" +
+                "}"));
+        assertEquals(1, compiler.messages(Diagnostic.Kind.ERROR).size());
+        assertNull(compiler.generatedSource("example/Ok_ParamsInjector.java"));
+        assertNull(compiler.generatedSource("example/Outer_ParamsInjector.java"));
+    }
+}
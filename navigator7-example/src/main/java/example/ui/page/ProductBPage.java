@@ -27,13 +27,13 @@ public class ProductBPage extends VerticalLayout implements ParamChangeListener
         }
 
         // Optional String
-        String value1 = (String) uriAnalyzer.getString(navigationEvent.getParams(), 1);
+        String value1 = (String) uriAnalyzer.getString(navigationEvent.getParsedParams(), 1);
 
         // Optional String
-        String value2 = (String) uriAnalyzer.getString(navigationEvent.getParams(), 2);
+        String value2 = (String) uriAnalyzer.getString(navigationEvent.getParsedParams(), 2);
 
         // Optional String
-        String namedValue = (String) uriAnalyzer.getString(navigationEvent.getParams(), "namedValue");
+        String namedValue = (String) uriAnalyzer.getString(navigationEvent.getParsedParams(), "namedValue");
 
      
         
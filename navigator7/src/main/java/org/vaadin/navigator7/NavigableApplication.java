@@ -2,6 +2,8 @@ package org.vaadin.navigator7;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.vaadin.navigator7.uri.EntityHandoff;
+import org.vaadin.navigator7.uri.EntityUriAnalyzer;
 import org.vaadin.navigator7.window.NavigableAppLevelWindow;
 
 import com.vaadin.Application;
@@ -24,6 +26,9 @@ public abstract class NavigableApplication extends Application implements Transa
     static protected ThreadLocal<NavigableAppLevelWindow> currentNavigableAppLevelWindow = new ThreadLocal<NavigableAppLevelWindow>();
     static protected ThreadLocal<String> veryInitialUriFragment = new ThreadLocal<String>();  // Trick until further version of Vaadin. See comment in transactionListener below
 
+    private int entityHandoffMaxLinks = 0;  // 0 = entity handoff disabled.
+    private transient EntityHandoff entityHandoff;  // transient: entities are not always Serializable. Recreated empty after deserialization.
+
     private WebApplication webApplication = null;  // Trick. Useless because of WebApplication.getCurrent(), but ..... sometimes we know the window (-> v6 Application) but not the v7 WebApplication, and we are not in a usual web thread. This is the case of File upload event listeners.
     
 
@@ -150,6 +155,22 @@ public abstract class NavigableApplication extends Application implements Transa
         return webApplication;
     }
 
+    /** Remembers the entities given to the last maxLinks links (ParamPageResource) rendered in this session:
+     * when the user follows one of them, the target page gets these entities without findEntity() call (see EntityHandoff).
+     * Typically called from the constructor of your NavigableApplication descendant. Disabled by default. */
+    protected void enableEntityHandoff(int maxLinks) {
+        this.entityHandoffMaxLinks = maxLinks;
+        this.entityHandoff = null;
+    }
+
+    /** null if entity handoff is not enabled. */
+    public EntityHandoff getEntityHandoff() {
+        if (entityHandoff == null && entityHandoffMaxLinks > 0) {
+            entityHandoff = new EntityHandoff(entityHandoffMaxLinks);
+        }
+        return entityHandoff;
+    }
+
 
 
     public static String getVeryInitialUriFragment() {
@@ -176,6 +197,8 @@ public abstract class NavigableApplication extends Application implements Transa
         // Better solution should come with Vaadin 7.
         HttpServletRequest request = (HttpServletRequest) transactionData;
         veryInitialUriFragment.set(request.getParameter("fr"));  // Could be null.
+
+        EntityUriAnalyzer.beginRequest();  // Each entity is loaded at most once during the request.
     }
 
     @Override
@@ -187,6 +210,7 @@ public abstract class NavigableApplication extends Application implements Transa
         currentApplication.remove();
         currentNavigableAppLevelWindow.remove();
         veryInitialUriFragment.remove();
+        EntityUriAnalyzer.endRequest();
     }
 
     
@@ -2,6 +2,8 @@ package org.vaadin.navigator7;
 
 import org.vaadin.navigator7.interceptor.PageInvocation;
 import org.vaadin.navigator7.uri.ParamPageResource;
+import org.vaadin.navigator7.uri.ParsedFragment;
+import org.vaadin.navigator7.uri.RouteMatch;
 import org.vaadin.navigator7.uri.UriAnalyzer;
 import org.vaadin.navigator7.window.NavigableAppLevelWindow;
 
@@ -28,9 +30,17 @@ public class Navigator
     }
 
     
-    /** Kind of forward to another page */
+    /** Kind of forward to another page.
+     * For a ParamPageResource, the values it contains are injected as they are into the @Param fields of the page:
+     * they are not converted from the URI String again (and entities are not loaded again). The URI in the browser is updated as usual. */
     public void navigateTo(PageResource pageResource) {
-        navigateTo(pageResource.getPageClass(), pageResource.getParams());
+        if (pageResource instanceof ParamPageResource) {
+            PageInvocation pageInvocation = new PageInvocation(this, pageResource.getPageClass(), pageResource.getParams(), true);
+            pageInvocation.setParamPageResource((ParamPageResource)pageResource);
+            pageInvocation.invoke();  // Will ultimately call Navigator.placePage
+        } else {
+            navigateTo(pageResource.getPageClass(), pageResource.getParams());
+        }
     }
 
     /** Kind of forward to another page
@@ -47,13 +57,8 @@ public class Navigator
     public void reloadCurrentPage(){
         // We need the params (we already know the screen name and class).
         WebApplication webApp = getNavigableAppLevelWindow().getNavigableApplication().getWebApplication();  // Sometimes we are called via a file v6 upload listener (and in that case WebApplication.getCurrent() is null) 
-        String[] fragment = webApp.getUriAnalyzer().extractPageNameAndParamsFromFragment(uriFragmentUtility.getFragment());
-        String params;
-        if (fragment != null && fragment.length > 1)  {
-            params = fragment[1];
-        } else {
-            params = null;
-        }
+        // The page name may have several segments ("admin/users/edit"): the params start after the matched route.
+        String params = webApp.getUriAnalyzer().matchFragment(uriFragmentUtility.getFragment(), webApp.getNavigatorConfig().getRouteTable()).getParams();
         
         invokeInterceptors(getNavigableAppLevelWindow().getPage().getClass(), params, false);
 //        checkParamsThenInstantiatePage(((NavigableAppLevelWindow)getWindow()).getPage().getClass(), params, false);
@@ -99,6 +104,7 @@ public class Navigator
         UriAnalyzer uriAnalyzer; // could be retrieved by the ParamChangeListener from the Navigator. Given here for convenience.
         Class<? extends Component> pageClass;
         String params;
+        ParsedFragment parsedParams;  // null if the event has been created with a String only.
         
         /**
          * New instance of text change event.
@@ -112,6 +118,13 @@ public class Navigator
             this.params = params;
         }
 
+        /** Idem, with the params already tokenized (by the PageInvocation) */
+        public NavigationEvent(Navigator source, UriAnalyzer uriAnalyzer, 
+                Class<? extends Component> pageClass, ParsedFragment parsedParams) {
+            this(source, uriAnalyzer, pageClass, parsedParams.getFragment());
+            this.parsedParams = parsedParams;
+        }
+
         /**
          * Gets the Navigator who fired the event. From it, you can retrieve the concerned AppLevelWindow.
          */
@@ -126,6 +139,14 @@ public class Navigator
         public String getParams() {
             return params;
         }
+
+        /** The params tokenized, to read parameter values without parsing getParams() again. */
+        public ParsedFragment getParsedParams() {
+            if (parsedParams == null) {
+                parsedParams = WebApplication.getCurrent().getUriAnalyzer().parseFragment(params);
+            }
+            return parsedParams;
+        }
     }
 
     
@@ -163,30 +184,30 @@ public class Navigator
     }
     
     
-    /** uri has the form of: "http://domain.com/appName/#user/userid=555", here we get the "user/userid=555".
-     * We extract the first part, before the 1st "/" ("user"), and we select a new center component based on that.
+    /** uri has the form of: "http://domain.com/appName/#admin/users/edit/42", here we get the "admin/users/edit/42".
+     * The page name is the longest registered name made of the first whole segments (see RouteTable.matchRoute()):
+     * "admin/users/edit" if it exists, else "admin/users", else "admin". We select a new center component based on that.
      * That component takes place in the main area of the layout,
-     * Then we give the rest of the string  to that component ("userid=555").
+     * Then we give the rest of the string  to that component ("42").
      */
     @Override
     public void fragmentChanged(FragmentChangedEvent source) {
         String fragment = source.getUriFragmentUtility().getFragment();
 
-        // Get the pageName and params from the URI
-        String[] names = WebApplication.getCurrent().getUriAnalyzer().extractPageNameAndParamsFromFragment(fragment);
-        String pageName = names[0];
-        String params = names[1];
+        // Get the page and params from the URI (the page name is matched in the fragment, without substring).
+        RouteMatch routeMatch = WebApplication.getCurrent().getUriAnalyzer().matchFragment(fragment);
+        String params = routeMatch.getParams();
 
         // Get the page class from the page name.
         Class<? extends Component> pageClass;
-        if (pageName == null || "".equals(pageName.trim())) {
+        if (! routeMatch.hasPageName()) {
             pageClass = WebApplication.getCurrent().getNavigatorConfig().getHomePageClass();
         } else {
             // Do we know that name (that URI) ?
-            pageClass = WebApplication.getCurrent().getNavigatorConfig().getPageClass(pageName);
+            pageClass = routeMatch.getPageClass();
             if (pageClass == null) {  // Page does not exist in our config (url hacking?)
                 if (! fragment.startsWith("/")) {
-                    handleInvalidUri("No page with name '" + pageName+"'.");
+                    handleInvalidUri("No page with name '" + routeMatch.getPageName()+"'.");
                     params = fragment; // Let's give the full fragment to the home page, maybe it will find something useful in it.
                 } else { 
                     // It starts with "/" and means there is no page name on purpose because it's the home page.
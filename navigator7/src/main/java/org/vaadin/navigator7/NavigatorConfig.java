@@ -1,14 +1,20 @@
 package org.vaadin.navigator7;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.vaadin.navigator7.interceptor.Interceptor;
+import org.vaadin.navigator7.uri.ParamClassDescriptor;
 
 import com.vaadin.ui.Component;
 
@@ -19,26 +25,57 @@ import com.vaadin.ui.Component;
  */
 public class NavigatorConfig implements Serializable {
     
-    // The key is lowercase. For example, with the value AuctionEditorPage.class, we have the key "auctioneditor" in this map. The goal is to be key insesitive when accepting incoming uris. 
-    private HashMap<String, Class<? extends Component>> uriToClass = new HashMap<String, Class<? extends Component>>();
+    // Pages, as an immutable snapshot replaced at each (un)registration. Session threads read it without lock.
+    private final AtomicReference<RouteTable> routeTable = new AtomicReference<RouteTable>(RouteTable.EMPTY);
 
-    // The value is CamelCase. For example, with the key AuctionEditorPage.class, we have the value "AuctionEditor" in this map. The goal is to produce easy to read CamelCase uris.
-    private HashMap<Class<? extends Component>, String> classToUri = new HashMap<Class<? extends Component>, String>();
-
-    private Class<? extends Component> homePageClass;  // Class used for uri with no page name (as, for example just "http://domain.com/").
-    
     protected List<Interceptor> interceptorList = new ArrayList<Interceptor>();
     
-    // Pages for which Google bots should navigate through. Adds a ! in URIs.
-    private Set<Class<? extends Component>> crawlablePages = new HashSet<Class<? extends Component>>();
-    
-    /** Scans the pages annotated with @Page in the classpath, for the sub-package of the package given as parameter */
+    /** Resource listing the @Page classes (one fully qualified name per line), generated at compile time by the navigator7-apt annotation processor. */
+    public static final String PAGE_INDEX = "META-INF/navigator7/pages";
+
+    /** Registers the pages annotated with @Page in the given package and its sub-packages.
+     * The classpath is not scanned: the classes are read from the META-INF/navigator7/pages index that the navigator7-apt annotation processor
+     * writes at compile time (add the navigator7-apt jar to your compile classpath). All the indexes of the classpath (one per jar) are read.
+     * Pages are registered in the order of their class name: call setHomePageClass() to choose the home page. */
     public void registerPages(String packageName) {
-        // TODO: do some scanning of @Page annotated classes and add them to the navigator.
-        // See http://stackoverflow.com/questions/259140/scanning-java-annotations-at-runtime
-        // It depends on what system Vaadin 7 will use to autodetect annotations.
-        // Question asked there: http://vaadin.com/forum/-/message_boards/message/152638
-        throw new UnsupportedOperationException("This feature has not been implemented yet. Use the other registerPages method, taking an array of classes as parameter.");
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = NavigatorConfig.class.getClassLoader();
+        }
+        String prefix = packageName.length() == 0 ? "" : packageName + ".";
+
+        Set<Class<?>> pageClasses = new LinkedHashSet<Class<?>>();  // The same index may be twice in the classpath.
+        try {
+            Enumeration<URL> indexes = classLoader.getResources(PAGE_INDEX);
+            while (indexes.hasMoreElements()) {
+                URL index = indexes.nextElement();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), "UTF-8"));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() == 0 || line.startsWith("#") || !line.startsWith(prefix)) {
+                            continue;
+                        }
+                        try {
+                            pageClasses.add(Class.forName(line, false, classLoader));
+                        } catch (ClassNotFoundException e) {
+                            throw new RuntimeException("Class "+line+" is listed in "+index+" but cannot be loaded. Probably an obsolete index: rebuild your project.", e);
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the page index "+PAGE_INDEX, e);
+        }
+
+        if (pageClasses.isEmpty()) {
+            throw new IllegalArgumentException("No @Page class found for package '"+packageName+"' in the "+PAGE_INDEX+" indexes of the classpath." +
+                    " Is the navigator7-apt annotation processor in your compile classpath? Else, use the registerPages method taking an array of classes as parameter.");
+        }
+        registerPages(pageClasses.toArray(new Class[pageClasses.size()]));
     }
     
     public void registerPages(Class[] pageClasses) {
@@ -95,48 +132,45 @@ public class NavigatorConfig implements Serializable {
     }
     
     public void addPageClass(Class<? extends Component> pageClass) {
-        if (computeIsCrawlable(pageClass)) {
-            crawlablePages.add(pageClass);
+        // Validate the @Param fields now (duplicate positions or names, position holes): a misconfigured page fails at startup,
+        // and link generation (ParamInjector.generateFragment()) has nothing to check anymore.
+        String schemaProblem = ParamClassDescriptor.forClass(pageClass).getSchemaProblem();
+        if (schemaProblem != null) {
+            throw new IllegalArgumentException(schemaProblem);
         }
 
         String pageName = computePageName(pageClass);
-        
-        // Add the page in maps.
-        String lowerCasePageName = pageName.toLowerCase();
-        if (uriToClass.containsKey(lowerCasePageName)) {
-            throw new IllegalArgumentException("Adding a page with a name that has already been added in the configuration: ["+lowerCasePageName+"]");
-        }
-        uriToClass.put(lowerCasePageName, pageClass); // lowercase here (see comment on Map definition)
+        boolean crawlable = computeIsCrawlable(pageClass);
 
-        if (classToUri.containsKey(pageClass)) {
-            throw new IllegalArgumentException("Adding a page with a class that has already been added in the configuration: ["+pageClass+"]");
-        }
-        classToUri.put(pageClass, pageName);  // Uppercase here (see comment on Map definition)
+        RouteTable current;
+        do {  // Retried if another thread published a new table meanwhile.
+            current = routeTable.get();
+        } while (!routeTable.compareAndSet(current, current.withPage(pageClass, pageName, crawlable)));
     }
 
     public void removePageClass(Class<? extends Component> pageClass) {
-        if (computeIsCrawlable(pageClass)) {
-            crawlablePages.remove(pageClass);
-        }
-
-        if (!classToUri.containsKey(pageClass)) {
-            throw new IllegalArgumentException("Removing a page with a class that has not been added in the configuration: ["+pageClass+"]");
-        }
-        String pageName = classToUri.get(pageClass);
-        String lowerCasePageName = pageName.toLowerCase();
+        RouteTable current;
+        do {
+            current = routeTable.get();
+        } while (!routeTable.compareAndSet(current, current.withoutPage(pageClass)));
+    }
 
-        classToUri.remove(pageClass);
-        uriToClass.remove(lowerCasePageName);
+    /** The current pages. The returned table never changes: use it to do several lookups on a consistent set of pages. */
+    public RouteTable getRouteTable() {
+        return routeTable.get();
     }
 
+    /** Class used for uri with no page name (as, for example just "http://domain.com/").
+     * By default, the first registered page. */
     public Class<? extends Component> getHomePageClass() {
-        return homePageClass == null
-                ? homePageClass = uriToClass.values().iterator().next()
-                : homePageClass;
+        return routeTable.get().getHomePageClass();
     }
 
     public void setHomePageClass(Class<? extends Component> hpClassParam) {
-        this.homePageClass = hpClassParam;
+        RouteTable current;
+        do {  // Links to the home page have no page name: the reverse routes are recomputed.
+            current = routeTable.get();
+        } while (!routeTable.compareAndSet(current, current.withHomePage(hpClassParam)));
     }
     
     
@@ -153,15 +187,16 @@ public class NavigatorConfig implements Serializable {
     }
 
     public Collection<Class<? extends Component>> getPagesClass() {
-        return classToUri.keySet();
+        return routeTable.get().getPagesClass();
     }
 
+    /** @return null if no page has that name (case insensitive). */
     public Class<? extends Component> getPageClass(String pageName) {
-        return uriToClass.get(pageName.toLowerCase());
+        return routeTable.get().getPageClass(pageName);
     }
 
     public String getPageName(Class<? extends Component> pageClass) {
-        String result = classToUri.get(pageClass);
+        String result = routeTable.get().getPageName(pageClass);
         // Defensive coding
         if (result == null) {  // Not found.
             throw new IllegalArgumentException("Bug: a given page class would have not a name? " +
@@ -179,7 +214,7 @@ public class NavigatorConfig implements Serializable {
     }
 
     public boolean isPageCrawlable(Class<? extends Component> pageClass) {
-        return crawlablePages.contains(pageClass);
+        return routeTable.get().isPageCrawlable(pageClass);
     }
     
     
@@ -13,7 +13,8 @@ import java.lang.annotation.Target;
 public @interface Page {
     /** By default the name of the page in the uri is the class name without the "Page" postfix.
      * If a class name is ProductPage.class, the name used in the uri will be "Product".
-     * If you don't like that (i.e. if you want a tiny uri with as "p" as page name) you can set the page name here. */
+     * If you don't like that (i.e. if you want a tiny uri with as "p" as page name) you can set the page name here.
+     * The name may be hierarchical, as "admin/users/edit": the params of the page come after it ("#admin/users/edit/42"). */
     String uriName() default "";
     
     /** Crawlable pages are browsed by search engines as google bot.
@@ -0,0 +1,74 @@
+package org.vaadin.navigator7;
+
+import java.io.Serializable;
+
+import com.vaadin.ui.Component;
+
+/** A registered page, as known by the RouteTable: its class, its name in URIs and its options.
+ * Immutable, built once when the page is registered.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class PageRoute implements Serializable {
+
+    private final Class<? extends Component> pageClass;
+    private final String pageName;     // CamelCase, as written in URIs (i.e. "AuctionEditor").
+    private final boolean crawlable;   // A ! is added in URIs for Google bots.
+    private final boolean homePage;
+
+    // Reverse route: the fragment of links to that page, precomputed for buildFragment() (with the "!" of crawlable pages, without page name for the home page).
+    private final String prefix;                 // "!Product/", or "/" for the home page. Followed by the params.
+    private final String fragmentWithoutParams;  // "!Product", or "" for the home page.
+    private final String anchoredPrefix;         // Idem with "#".
+    private final String anchoredFragmentWithoutParams;
+
+    PageRoute(Class<? extends Component> pageClass, String pageName, boolean crawlable, boolean homePage) {
+        this.pageClass = pageClass;
+        this.pageName = pageName;
+        this.crawlable = crawlable;
+        this.homePage = homePage;
+
+        // For the home page we don't tell the page name. But want # also for the home page because: see http://vaadin.com/forum/-/message_boards/message/69700
+        this.fragmentWithoutParams = homePage ? "" : (crawlable ? "!" : "") + pageName;
+        this.prefix = fragmentWithoutParams + "/";
+        this.anchoredFragmentWithoutParams = "#" + fragmentWithoutParams;
+        this.anchoredPrefix = "#" + prefix;
+    }
+
+    /** Same route, for another home page. */
+    PageRoute withHomePage(boolean homePage) {
+        return homePage == this.homePage ? this : new PageRoute(pageClass, pageName, crawlable, homePage);
+    }
+
+    /** Fragment of a link to that page. e.g. "Auction/1234". In the browser it will be "http://domain.com/MyApplication/#Auction/1234".
+     * @param params null or "" if no param.
+     * @param withAnchor true means you want a # in front of the result (as "#Auction/1234") */
+    public String buildFragment(String params, boolean withAnchor) {
+        if (params == null || params.length() == 0) {  // Don't show the "/" in case there is no param.
+            return withAnchor ? anchoredFragmentWithoutParams : fragmentWithoutParams;
+        }
+        return (withAnchor ? anchoredPrefix : prefix).concat(params);
+    }
+
+    public Class<? extends Component> getPageClass() {
+        return pageClass;
+    }
+
+    public String getPageName() {
+        return pageName;
+    }
+
+    public boolean isCrawlable() {
+        return crawlable;
+    }
+
+    /** true if links to that page have no page name (see NavigatorConfig.getHomePageClass()). */
+    public boolean isHomePage() {
+        return homePage;
+    }
+
+    @Override
+    public String toString() {
+        return pageName + " -> " + pageClass.getName();
+    }
+}
@@ -0,0 +1,264 @@
+package org.vaadin.navigator7;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.ui.Component;
+
+/** Immutable snapshot of the pages of a NavigatorConfig: page name to class and vis versa.
+ * NavigatorConfig publishes a new RouteTable each time a page is registered or unregistered,
+ * so that the session threads read it without lock and without seeing a half-modified map.
+ *
+ * Page names are case insensitive. They are found with findRoute(), directly from the characters of the URI fragment
+ * (hash tables of the names with case folding): no lower cased String and no substring is created.
+ *
+ * Page names may be hierarchical, as "admin/users/edit" (@Page(uriName="admin/users/edit")). The names are stored in a trie of segments:
+ * matchRoute() reads the fragment segment by segment, in O(depth) whatever the number of pages, and what follows the page name are the params.
+ * A simple name ("Product") is a path of one segment.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class RouteTable implements Serializable {
+
+    static final RouteTable EMPTY = new RouteTable(new ArrayList<PageRoute>(), null);
+
+    private final List<PageRoute> routes;                                  // Registration order.
+    private final Collection<Class<? extends Component>> pagesClass;       // Idem.
+    private final Map<Class<? extends Component>, PageRoute> routesByClass;
+    private final Node root;          // Trie of the page names, by segment.
+    private final Class<? extends Component> explicitHomePageClass;  // Given to NavigatorConfig.setHomePageClass(). null = the first page.
+
+    private RouteTable(List<PageRoute> routes, Class<? extends Component> explicitHomePageClass) {
+        this.explicitHomePageClass = explicitHomePageClass;
+        Class<? extends Component> homePageClass = explicitHomePageClass != null ? explicitHomePageClass
+                : routes.isEmpty() ? null : routes.get(0).getPageClass();
+        for (int i = 0; i < routes.size(); i++) {  // Reverse routes depend on the home page.
+            routes.set(i, routes.get(i).withHomePage(routes.get(i).getPageClass() == homePageClass));
+        }
+        this.routes = Collections.unmodifiableList(routes);
+
+        Map<Class<? extends Component>, PageRoute> byClass = new HashMap<Class<? extends Component>, PageRoute>();
+        List<Class<? extends Component>> classes = new ArrayList<Class<? extends Component>>(routes.size());
+        this.root = new Node(null);
+        for (PageRoute route : routes) {
+            byClass.put(route.getPageClass(), route);
+            classes.add(route.getPageClass());
+            String name = route.getPageName();
+            Node node = root;
+            int segmentStart = 0;
+            while (true) {  // Shared prefixes ("admin/...") are stored once.
+                int segmentEnd = name.indexOf('/', segmentStart);
+                if (segmentEnd < 0) {
+                    segmentEnd = name.length();
+                }
+                Node child = node.getChild(name, segmentStart, segmentEnd);
+                node = child != null ? child : node.addChild(name.substring(segmentStart, segmentEnd));
+                if (segmentEnd == name.length()) {
+                    break;
+                }
+                segmentStart = segmentEnd + 1;
+            }
+            node.route = route;
+        }
+        this.routesByClass = Collections.unmodifiableMap(byClass);
+        this.pagesClass = Collections.unmodifiableList(classes);
+    }
+
+
+    /** Returns a copy of this table, with one more page.
+     * @throws IllegalArgumentException if the name (case insensitive) or the class is already in the table. */
+    RouteTable withPage(Class<? extends Component> pageClass, String pageName, boolean crawlable) {
+        if (pageName.length() == 0 || pageName.startsWith("/") || pageName.endsWith("/") || pageName.contains("//")) {
+            throw new IllegalArgumentException("Invalid page name ["+pageName+"] for "+pageClass+": hierarchical names are segments separated by single slashes, as \"admin/users/edit\".");
+        }
+        if (findRoute(pageName, 0, pageName.length()) != null) {
+            throw new IllegalArgumentException("Adding a page with a name that has already been added in the configuration: ["+pageName.toLowerCase()+"]");
+        }
+        if (routesByClass.containsKey(pageClass)) {
+            throw new IllegalArgumentException("Adding a page with a class that has already been added in the configuration: ["+pageClass+"]");
+        }
+
+        List<PageRoute> newRoutes = new ArrayList<PageRoute>(routes);
+        newRoutes.add(new PageRoute(pageClass, pageName, crawlable, false));
+        return new RouteTable(newRoutes, explicitHomePageClass);
+    }
+
+    /** Returns a copy of this table, without that page.
+     * @throws IllegalArgumentException if the class is not in the table. */
+    RouteTable withoutPage(Class<? extends Component> pageClass) {
+        PageRoute route = routesByClass.get(pageClass);
+        if (route == null) {
+            throw new IllegalArgumentException("Removing a page with a class that has not been added in the configuration: ["+pageClass+"]");
+        }
+
+        List<PageRoute> newRoutes = new ArrayList<PageRoute>(routes);
+        newRoutes.remove(route);
+        return new RouteTable(newRoutes, explicitHomePageClass == pageClass ? null : explicitHomePageClass);
+    }
+
+    /** Returns a copy of this table, with another home page (null for the first page). */
+    RouteTable withHomePage(Class<? extends Component> homePageClass) {
+        return new RouteTable(new ArrayList<PageRoute>(routes), homePageClass);
+    }
+
+
+    /** Finds the page which name (case insensitive) is the range [start, end[ of text (typically the URI fragment).
+     * @return null if no page has that name. */
+    public PageRoute findRoute(CharSequence text, int start, int end) {
+        return walk(text, start, end, false);
+    }
+
+    /** Finds the page with the longest name (case insensitive) that starts the range [start, end[ of text, on whole segments.
+     * For "admin/users/edit/42", it's the page "admin/users/edit" if it exists, else "admin/users", else "admin".
+     * The page name ends at start + route.getPageName().length(), followed by "/" and the params, or by the end of the range.
+     * @return null if no page name starts the range. */
+    public PageRoute matchRoute(CharSequence text, int start, int end) {
+        return walk(text, start, end, true);
+    }
+
+    private PageRoute walk(CharSequence text, int start, int end, boolean longestPrefix) {
+        Node node = root;
+        PageRoute longest = null;
+        int segmentStart = start;
+        while (true) {
+            int segmentEnd = segmentStart;
+            while (segmentEnd < end && text.charAt(segmentEnd) != '/') {
+                segmentEnd++;
+            }
+            node = node.getChild(text, segmentStart, segmentEnd);
+            if (node == null) {
+                return longest;  // null if exact name asked.
+            }
+            if (segmentEnd == end) {
+                return node.route != null || !longestPrefix ? node.route : longest;
+            }
+            if (longestPrefix && node.route != null) {
+                longest = node.route;
+            }
+            segmentStart = segmentEnd + 1;
+        }
+    }
+
+    /** @return null if the class is not in the table. */
+    public PageRoute getRoute(Class<? extends Component> pageClass) {
+        return routesByClass.get(pageClass);
+    }
+
+    /** @return null if no page has that name (case insensitive). */
+    public Class<? extends Component> getPageClass(String pageName) {
+        PageRoute route = findRoute(pageName, 0, pageName.length());
+        return route == null ? null : route.getPageClass();
+    }
+
+    /** @return null if the class is not in the table. */
+    public String getPageName(Class<? extends Component> pageClass) {
+        PageRoute route = routesByClass.get(pageClass);
+        return route == null ? null : route.getPageName();
+    }
+
+    /** In registration order. Unmodifiable. */
+    public Collection<Class<? extends Component>> getPagesClass() {
+        return pagesClass;
+    }
+
+    /** In registration order. Unmodifiable. */
+    public List<PageRoute> getRoutes() {
+        return routes;
+    }
+
+    /** The page given to NavigatorConfig.setHomePageClass(), else the first registered page. null if the table is empty. */
+    public Class<? extends Component> getHomePageClass() {
+        if (explicitHomePageClass != null) {
+            return explicitHomePageClass;
+        }
+        return routes.isEmpty() ? null : routes.get(0).getPageClass();
+    }
+
+    public boolean isPageCrawlable(Class<? extends Component> pageClass) {
+        PageRoute route = routesByClass.get(pageClass);
+        return route != null && route.isCrawlable();
+    }
+
+
+    private static int foldedHash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(text.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** A segment of page names in the trie. Built by the constructor, never modified after. */
+    private static final class Node implements Serializable {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private final String segment;        // As written in the first registered page name having it. null for the root.
+        private PageRoute route;              // Page which name ends with this segment. null if none (as "admin" when only "admin/users" is registered).
+        private Node[] children = NO_CHILDREN; // Open addressing hash table by case folded segment. At least half empty.
+        private int childCount;
+
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        Node getChild(CharSequence text, int start, int end) {
+            if (childCount == 0) {
+                return null;
+            }
+            int mask = children.length - 1;
+            int i = foldedHash(text, start, end) & mask;
+            Node child;
+            while ((child = children[i]) != null) {
+                if (foldedEquals(child.segment, text, start, end)) {
+                    return child;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        Node addChild(String childSegment) {
+            if ((childCount + 1) * 2 > children.length) {  // Rehash in a twice bigger table.
+                Node[] old = children;
+                children = new Node[Math.max(2, old.length * 2)];
+                for (Node child : old) {
+                    if (child != null) {
+                        insert(child);
+                    }
+                }
+            }
+            Node child = new Node(childSegment);
+            insert(child);
+            childCount++;
+            return child;
+        }
+
+        private void insert(Node child) {
+            int mask = children.length - 1;
+            int i = foldedHash(child.segment, 0, child.segment.length()) & mask;
+            while (children[i] != null) {
+                i = (i + 1) & mask;
+            }
+            children[i] = child;
+        }
+    }
+
+    private static boolean foldedEquals(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char a = name.charAt(i);
+            char b = text.charAt(start + i);
+            if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
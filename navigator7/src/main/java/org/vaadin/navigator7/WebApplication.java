@@ -13,6 +13,8 @@ import org.vaadin.navigator7.interceptor.Interceptor;
 import org.vaadin.navigator7.interceptor.ParamChangeListenerInterceptor;
 import org.vaadin.navigator7.interceptor.ParamInjectInterceptor;
 import org.vaadin.navigator7.interceptor.PageInvocation.PageInstantiationStrategy;
+import org.vaadin.navigator7.uri.ParamConverter;
+import org.vaadin.navigator7.uri.ParamConverterRegistry;
 import org.vaadin.navigator7.uri.ParamUriAnalyzer;
 
 import com.vaadin.ui.Component;
@@ -220,6 +222,9 @@ public class WebApplication {
     /** Don't hesitate to change this value with another descendant of UriAnalyser in your constructor's descendant. */
     protected ParamUriAnalyzer uriAnalyzer = new ParamUriAnalyzer();
 
+    /** Converters of the @Param field values, by type. */
+    protected ParamConverterRegistry paramConverters = new ParamConverterRegistry();
+
 
     
 
@@ -243,6 +248,12 @@ public class WebApplication {
         navigatorConfig.unregisterPage(clazz);
     }
 
+    /** Call this in your constructor's descendant for the application-wide types of your @Param fields (as a Language enum or a Money class).
+     * Entities don't need a converter: they are retrieved through EntityUriAnalyzer.findEntity(). */
+    public <T> void registerParamConverter(Class<T> type, ParamConverter<T> converter) {
+        paramConverters.register(type, converter);
+    }
+
     public void registerInterceptor(Interceptor interceptor) {
         navigatorConfig.getInterceptorList().add(interceptor);
     }
@@ -259,6 +270,10 @@ public class WebApplication {
         uriAnalyzer = paramUriAnalyzer;
     }
 
+    public ParamConverterRegistry getParamConverters() {
+        return paramConverters;
+    }
+
     public PageInstantiationStrategy getPageInstantiationStrategy() {
     	return DEFAULT_PAGE_INSTANTIATION_STRATEGY;
     }
@@ -4,6 +4,8 @@ import java.util.List;
 
 import org.vaadin.navigator7.Navigator;
 import org.vaadin.navigator7.WebApplication;
+import org.vaadin.navigator7.uri.ParamPageResource;
+import org.vaadin.navigator7.uri.ParsedFragment;
 
 import com.vaadin.ui.Component;
 import com.vaadin.ui.AbstractSelect.NewItemHandler;
@@ -22,6 +24,8 @@ public class PageInvocation {
     protected Navigator navigator;
     protected Class<? extends Component> pageClass;
     protected String params;
+    protected ParsedFragment parsedParams;  // params tokenized once for the whole chain. Built lazily, reset when params change.
+    protected ParamPageResource paramPageResource;  // Typed values of params, when navigating from server side code with a ParamPageResource. Reset when params or pageClass change.
     protected Component pageInstance;
     protected boolean pagePlaced;  // true when the page has been placed (no interceptor interrupted the call chain).
     protected boolean isInstanceNew = true;  // Is it a new page instance that PageInvocation instantiated (new) or a reused page ?
@@ -107,6 +111,7 @@ public class PageInvocation {
     /** An interceptor may change the destination page (set an error page, for example) */
     public void setPageClass(Class<? extends Component> pageClass) {
         this.pageClass = pageClass;
+        this.paramPageResource = null;
     }
 
     public String getParams() {
@@ -116,6 +121,28 @@ public class PageInvocation {
     /** An interceptor may change the params that will be used to instantiate the page */
     public void setParams(String params) {
         this.params = params;
+        this.parsedParams = null;
+        this.paramPageResource = null;
+    }
+
+    /** The params, tokenized by the ParamUriAnalyzer the first time this method is called.
+     * Interceptors and pages should use this instead of parsing getParams() again. */
+    public ParsedFragment getParsedParams() {
+        if (parsedParams == null) {
+            parsedParams = WebApplication.getCurrent().getUriAnalyzer().parseFragment(params);
+        }
+        return parsedParams;
+    }
+
+    /** The typed values of the params, if the navigation comes from Navigator.navigateTo(ParamPageResource). Else null (the values come from the URI).
+     * ParamInjectInterceptor injects them directly, without converting params. */
+    public ParamPageResource getParamPageResource() {
+        return paramPageResource;
+    }
+
+    /** paramPageResource must match pageClass and params. */
+    public void setParamPageResource(ParamPageResource paramPageResource) {
+        this.paramPageResource = paramPageResource;
     }
 
     public Navigator getNavigator() {
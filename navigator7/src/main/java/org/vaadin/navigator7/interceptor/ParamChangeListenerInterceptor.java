@@ -26,7 +26,7 @@ public class ParamChangeListenerInterceptor implements Interceptor {
             // Generate and send event.
             NavigationEvent event = new NavigationEvent(pageInvocation.getNavigator(),
                     WebApplication.getCurrent().getUriAnalyzer(),
-                    page.getClass(), pageInvocation.getParams());
+                    page.getClass(), pageInvocation.getParsedParams());
             try {
                 ((ParamChangeListener)page).paramChanged(event);
             } catch (RuntimeException e) {
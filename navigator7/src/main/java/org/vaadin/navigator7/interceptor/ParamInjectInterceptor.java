@@ -1,24 +1,86 @@
 package org.vaadin.navigator7.interceptor;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.vaadin.navigator7.uri.EntityUriAnalyzer;
 import org.vaadin.navigator7.uri.ParamInjector;
 
 import com.vaadin.ui.Component;
 
 /** If the page is a ParamPage, injects parameter values.
+ * 
+ * Optionally (see the constructor with an ExecutorService), entity parameters are loaded in parallel, while the page is instantiated.
  * 
  * @author John Rizzo - BlackBeltFactory.com
  *
  */
 public class ParamInjectInterceptor implements Interceptor {
 
+    protected ExecutorService entityLoadingExecutor;  // null = entities are loaded by the request thread, during the injection.
+    protected long entityLoadingTimeoutMillis = 10000;  // After the page construction, max wait for the entities. Late ones are loaded by the request thread.
+
+    public ParamInjectInterceptor() {
+    }
+
+    /** Entity @Param values are loaded on entityLoadingExecutor (in parallel for the different fields), while the page constructor runs.
+     * The latency of a navigation becomes the longest of the page construction and of the slowest entity loading,
+     * instead of their sum. Use a bounded executor (i.e. Executors.newFixedThreadPool()): when it rejects a task, the entity is loaded by the request thread.
+     * Your EntityUriAnalyzer.findEntity() is then called from the executor threads: it must not depend on the request thread (ThreadLocal EntityManager,...).
+     * Your pages constructor must not depend on their @Param values (it's true anyway: they are injected after the construction).
+     * 
+     * Register it in your WebApplication descendant, instead of the default one:
+     * <pre>
+     *     protected void registerInterceptors() {
+     *         registerInterceptor( new ParamChangeListenerInterceptor() );
+     *         registerInterceptor( new ParamInjectInterceptor(Executors.newFixedThreadPool(8)) );
+     *     }
+     * </pre> */
+    public ParamInjectInterceptor(ExecutorService entityLoadingExecutor) {
+        this.entityLoadingExecutor = entityLoadingExecutor;
+    }
+
+    /** Idem, with the max wait for the entities once the page is constructed (10 seconds by default).
+     * The loading tasks not finished by then are cancelled and their entities are loaded by the request thread. */
+    public ParamInjectInterceptor(ExecutorService entityLoadingExecutor, long entityLoadingTimeout, TimeUnit unit) {
+        this.entityLoadingExecutor = entityLoadingExecutor;
+        this.entityLoadingTimeoutMillis = unit.toMillis(entityLoadingTimeout);
+    }
+
 
     @Override
     public void intercept(PageInvocation pageInvocation) {
-        if (ParamInjector.containsParamAnnotation( pageInvocation.getPageClass() )) {  
+        if (ParamInjector.containsParamAnnotation( pageInvocation.getPageClass() )
+                && pageInvocation.getParamPageResource() != null) {  // Navigation from server side code: values are already typed.
+            Component page = pageInvocation.getPageInstance();
+            if (ParamInjector.verifyAndInjectValues( page, pageInvocation.getParamPageResource(), pageInvocation.getParams(),
+                    !pageInvocation.isInstanceNew())) {
+                pageInvocation.invoke();
+            }
+        } else if (ParamInjector.containsParamAnnotation( pageInvocation.getPageClass() )) {  
+            // Entities are loaded while the page is instantiated (if we have an executor).
+            EntityUriAnalyzer<?>.PendingEntities pendingEntities = null;
+            if (entityLoadingExecutor != null) {
+                pendingEntities = ParamInjector.loadEntitiesAsync(pageInvocation.getPageClass(), pageInvocation.getParsedParams(), entityLoadingExecutor);
+            }
+
             // We don't call pageInvocation.getPageInstance() before we are sure it contains @Param fields,
             // because getPageInstance() will probably trigger page instantiation, and we only do it if necessary. 
-            Component page = pageInvocation.getPageInstance();
-            if (ParamInjector.verifyAndInjectParams( page, pageInvocation.getParams(), 
+            Component page;
+            boolean joined = false;
+            try {
+                page = pageInvocation.getPageInstance();
+                if (pendingEntities != null) {
+                    pendingEntities.join(entityLoadingTimeoutMillis, TimeUnit.MILLISECONDS);  // Entities go into the identity map of the request, where the injection finds them.
+                    joined = true;
+                }
+            } finally {
+                if (pendingEntities != null && !joined) {  // Page instantiation failed (exception or error): nobody needs these entities anymore.
+                    pendingEntities.cancel();
+                }
+            }
+
+            if (ParamInjector.verifyAndInjectParams( page, pageInvocation.getParsedParams(), 
                     !pageInvocation.isInstanceNew()  // In case it's a reused instance (param in URI changed), we'll cleanup non given params. 
                     )) {
                 pageInvocation.invoke();
@@ -27,4 +89,4 @@ public class ParamInjectInterceptor implements Interceptor {
             pageInvocation.invoke();
         }
     }
-}
\ No newline at end of file
+}
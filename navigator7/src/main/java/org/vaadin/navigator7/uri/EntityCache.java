@@ -0,0 +1,299 @@
+package org.vaadin.navigator7.uri;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Optional JVM-wide (second level) cache of the entities found by EntityUriAnalyzer.findEntity(), shared by all the sessions.
+ * Only the entity classes you configure are cached, each with its own size bound and time to live:
+ * <pre>
+ *     EntityCache entityCache = new EntityCache();
+ *     entityCache.configure(Product.class, 1000, 10, TimeUnit.MINUTES);
+ *     entityCache.configure(Company.class, 200, 1, TimeUnit.HOURS);
+ *     myEntityUriAnalyzer.setEntityCache(entityCache);
+ * </pre>
+ * Cached instances are given to many threads at the same time: only cache read-mostly entities, that your pages don't modify
+ * (with JPA, they are detached instances). When an entity changes, call invalidate(Class, pk) or invalidateAll(Class).
+ * A load that started before the invalidation (in another thread) does not put its (maybe stale) entity in the cache afterwards:
+ * loaders read getGeneration() before the DB access and give it to put(Class, Object, Object, long).
+ *
+ * Each entity class has its own region, a ConcurrentHashMap without global lock.
+ * When a region is full, entries are evicted with the CLOCK algorithm (an approximation of LRU):
+ * entries read since the last pass of the clock hand get a second chance.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class EntityCache {
+
+    private final Map<Class<?>, Region> regions = new ConcurrentHashMap<Class<?>, Region>();
+
+    /** Caches the entities of that class (and only that exact class, as given to findEntity()).
+     * Calling it again for the same class replaces its region (entries are lost).
+     * @param maxSize maximum number of entities of that class in the cache.
+     * @param timeToLive duration after which a cached entity is loaded again from the DB. 0 for no expiration. */
+    public void configure(Class<?> entityClass, int maxSize, long timeToLive, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive, for "+entityClass+": "+maxSize);
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("timeToLive must not be negative, for "+entityClass+": "+timeToLive);
+        }
+        regions.put(entityClass, new Region(maxSize, unit.toNanos(timeToLive)));
+    }
+
+    /** true if the entities of that class are cached. */
+    public boolean isConfigured(Class<?> entityClass) {
+        return regions.containsKey(entityClass);
+    }
+
+
+    /** @param pk a Long or a String, as given to findEntity().
+     * @return null if not in the cache (or expired), or if the class is not configured. */
+    public Object get(Class<?> entityClass, Object pk) {
+        Region region = regions.get(entityClass);
+        return region == null ? null : region.get(pk, true);
+    }
+
+    /** Idem get(), but a miss is not counted: for a caller that may leave the entity to get() (then counted there),
+     * or that loads it itself and then calls countMiss(). */
+    Object probe(Class<?> entityClass, Object pk) {
+        Region region = regions.get(entityClass);
+        return region == null ? null : region.get(pk, false);
+    }
+
+    /** Counts a miss of probe(). */
+    void countMiss(Class<?> entityClass) {
+        Region region = regions.get(entityClass);
+        if (region != null) {
+            region.misses.incrementAndGet();
+        }
+    }
+
+    /** Does nothing if the class is not configured. */
+    public void put(Class<?> entityClass, Object pk, Object entity) {
+        Region region = regions.get(entityClass);
+        if (region != null) {
+            region.put(pk, entity);
+        }
+    }
+
+    /** Idem, but does nothing if an entity of that class has been invalidated since getGeneration() returned generation
+     * (the entity has been loaded before the invalidation and may be stale). */
+    public void put(Class<?> entityClass, Object pk, Object entity, long generation) {
+        Region region = regions.get(entityClass);
+        if (region != null) {
+            region.put(pk, entity, generation);
+        }
+    }
+
+    /** Changes each time an entity of that class is invalidated. Read it before loading an entity to cache, and give it to put().
+     * @return 0 if the class is not configured. */
+    public long getGeneration(Class<?> entityClass) {
+        Region region = regions.get(entityClass);
+        return region == null ? 0 : region.generation.get();
+    }
+
+    /** Removes the entity of that pk, for example after you modified it. */
+    public void invalidate(Class<?> entityClass, String pk) {
+        Region region = regions.get(entityClass);
+        if (region != null) {
+            region.generation.incrementAndGet();  // Before the removal: loads in progress won't put their entity (see Region.put(Object, Object, long)).
+            region.remove(pk);
+            ParseResult longPk = NumberParser.parseLong(pk);  // The entity may have been cached with a long pk (EntityUriAnalyzer.useLongPrimaryKeys()).
+            if (longPk.isValid()) {
+                region.remove(longPk.getLong());
+            }
+        }
+    }
+
+    public void invalidate(Class<?> entityClass, long pk) {
+        invalidate(entityClass, Long.toString(pk));
+    }
+
+    /** Removes all the entities of that class and of its sub-classes. */
+    public void invalidateAll(Class<?> entityClass) {
+        for (Map.Entry<Class<?>, Region> entry : regions.entrySet()) {
+            if (entityClass.isAssignableFrom(entry.getKey())) {
+                entry.getValue().generation.incrementAndGet();
+                entry.getValue().clear();
+            }
+        }
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////
+    /////////////////////////////////////// Metrics ////////////////////////////////////////
+
+    /** Number of get() that found the entity, for that class. */
+    public long getHitCount(Class<?> entityClass) {
+        Region region = regions.get(entityClass);
+        return region == null ? 0 : region.hits.get();
+    }
+
+    /** Number of get() that did not find the entity (or found it expired), for that class. */
+    public long getMissCount(Class<?> entityClass) {
+        Region region = regions.get(entityClass);
+        return region == null ? 0 : region.misses.get();
+    }
+
+    /** Number of entities removed to respect maxSize, for that class. */
+    public long getEvictionCount(Class<?> entityClass) {
+        Region region = regions.get(entityClass);
+        return region == null ? 0 : region.evictions.get();
+    }
+
+    /** Between 0 and 1. 0 if there has been no get() for that class yet. */
+    public double getHitRate(Class<?> entityClass) {
+        return hitRate(getHitCount(entityClass), getMissCount(entityClass));
+    }
+
+    /** Hit rate for all the classes. */
+    public double getHitRate() {
+        long hits = 0;
+        long misses = 0;
+        for (Region region : regions.values()) {
+            hits += region.hits.get();
+            misses += region.misses.get();
+        }
+        return hitRate(hits, misses);
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0d : (double)hits / total;
+    }
+
+    /** Current number of cached entities of that class. */
+    public int size(Class<?> entityClass) {
+        Region region = regions.get(entityClass);
+        return region == null ? 0 : region.map.size();
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////
+    /////////////////////////////////////// Region /////////////////////////////////////////
+
+    private static final class Entry {
+        final Object entity;
+        final long expiresAt;        // System.nanoTime() based. Meaningless if the region has no time to live.
+        volatile boolean referenced;  // CLOCK bit: set by get(), cleared by the clock hand.
+
+        Entry(Object entity, long expiresAt) {
+            this.entity = entity;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** Entities of one class. */
+    private static final class Region {
+        final int maxSize;
+        final long timeToLiveNanos;  // 0 = no expiration.
+        final ConcurrentHashMap<Object, Entry> map;
+        final AtomicInteger size = new AtomicInteger();  // ConcurrentHashMap.size() is not cheap enough to be called at each put.
+        final AtomicBoolean evicting = new AtomicBoolean();  // Only one thread moves the clock hand, the others don't wait for it.
+        Iterator<Map.Entry<Object, Entry>> clockHand;  // Only used by the thread that holds "evicting".
+        final AtomicLong generation = new AtomicLong();  // Incremented by each invalidation.
+
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+
+        Region(int maxSize, long timeToLiveNanos) {
+            this.maxSize = maxSize;
+            this.timeToLiveNanos = timeToLiveNanos;
+            this.map = new ConcurrentHashMap<Object, Entry>(Math.min(maxSize, 1024) * 4 / 3 + 1);
+        }
+
+        Object get(Object pk, boolean countMiss) {
+            Entry entry = map.get(pk);
+            if (entry == null) {
+                if (countMiss) {
+                    misses.incrementAndGet();
+                }
+                return null;
+            }
+            if (timeToLiveNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {  // Expired.
+                if (map.remove(pk, entry)) {
+                    size.decrementAndGet();
+                }
+                if (countMiss) {
+                    misses.incrementAndGet();
+                }
+                return null;
+            }
+            if (!entry.referenced) {  // Avoids writing the (shared) volatile at each hit.
+                entry.referenced = true;
+            }
+            hits.incrementAndGet();
+            return entry.entity;
+        }
+
+        void put(Object pk, Object entity) {
+            put(pk, new Entry(entity, System.nanoTime() + timeToLiveNanos));
+        }
+
+        void put(Object pk, Object entity, long loadGeneration) {
+            if (generation.get() != loadGeneration) {  // Invalidated during the load.
+                return;
+            }
+            Entry entry = new Entry(entity, System.nanoTime() + timeToLiveNanos);
+            put(pk, entry);
+            if (generation.get() != loadGeneration && map.remove(pk, entry)) {  // Invalidated between the check and the put: the invalidation may have missed our entry.
+                size.decrementAndGet();
+            }
+        }
+
+        private void put(Object pk, Entry entry) {
+            Entry previous = map.put(pk, entry);
+            if (previous == null && size.incrementAndGet() > maxSize) {
+                evict();
+            }
+        }
+
+        void remove(Object pk) {
+            if (map.remove(pk) != null) {
+                size.decrementAndGet();
+            }
+        }
+
+        void clear() {
+            for (Object pk : map.keySet()) {
+                remove(pk);
+            }
+        }
+
+        /** Moves the clock hand until the region is back to maxSize.
+         * If another thread is already evicting, we let it do the job (the region may briefly exceed maxSize by a few entries). */
+        void evict() {
+            if (!evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int steps = 0;
+                int maxSteps = 2 * map.size() + 1;  // Each entry gets at most one second chance.
+                while (size.get() > maxSize && steps++ < maxSteps) {
+                    if (clockHand == null || !clockHand.hasNext()) {
+                        clockHand = map.entrySet().iterator();  // Weakly consistent: never throws ConcurrentModificationException.
+                        if (!clockHand.hasNext()) {
+                            break;
+                        }
+                    }
+                    Map.Entry<Object, Entry> candidate = clockHand.next();
+                    Entry entry = candidate.getValue();
+                    if (entry.referenced) {  // Second chance.
+                        entry.referenced = false;
+                    } else if (map.remove(candidate.getKey(), entry)) {
+                        size.decrementAndGet();
+                        evictions.incrementAndGet();
+                    }
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+}
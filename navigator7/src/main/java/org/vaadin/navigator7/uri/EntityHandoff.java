@@ -0,0 +1,155 @@
+package org.vaadin.navigator7.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.vaadin.navigator7.WebApplication;
+
+import com.vaadin.ui.Component;
+
+/** Per session memory of the entities given to the links (ParamPageResource) rendered recently, by target page and params fragment.
+ * When the user follows one of these links, ParamInjector puts these entities in the identity map of the request,
+ * and the target page gets them without findEntity() call (the list page already loaded them).
+ *
+ * Size-bounded: only the last maxLinks links are remembered (least recently used are forgotten).
+ * The entities are the instances of the previous requests: the target page may get a slightly older state of an entity
+ * than from the DB (and, with JPA, a detached instance). Don't enable it if your pages need fresh entities.
+ *
+ * Enable it with NavigableApplication.enableEntityHandoff().
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class EntityHandoff {
+
+    private final Map<LinkKey, List<HandedOffEntity>> links;
+
+    public EntityHandoff(final int maxLinks) {
+        if (maxLinks <= 0) {
+            throw new IllegalArgumentException("maxLinks must be positive: "+maxLinks);
+        }
+        this.links = new LinkedHashMap<LinkKey, List<HandedOffEntity>>(16, 0.75f, true) {  // Access order = LRU.
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LinkKey, List<HandedOffEntity>> eldest) {
+                return size() > maxLinks;
+            }
+        };
+    }
+
+
+    /** Called by ParamPageResource when a link is rendered. Remembers the entities among the values of the link. */
+    void linkRendered(Class<? extends Component> pageClass, String params, Object[] posParams, Map<String, Object> namedParams) {
+        ParamUriAnalyzer paramUriAnalyzer = WebApplication.getCurrent().getUriAnalyzer();
+        if (!(paramUriAnalyzer instanceof EntityUriAnalyzer<?>)) {
+            return;
+        }
+        EntityUriAnalyzer<?> entityUriAnalyzer = (EntityUriAnalyzer<?>)paramUriAnalyzer;
+        ParamClassDescriptor descriptor = ParamClassDescriptor.forClass(pageClass);
+
+        List<HandedOffEntity> entities = null;
+        if (posParams != null) {
+            List<ParamField> positionalFields = descriptor.getPositionalFields();
+            for (int i = 0; i < posParams.length && i < positionalFields.size(); i++) {
+                entities = addEntity(entities, entityUriAnalyzer, positionalFields.get(i), posParams[i]);
+            }
+        }
+        if (namedParams != null) {
+            for (Map.Entry<String, Object> namedParam : namedParams.entrySet()) {
+                ParamField paramField = descriptor.getNamedField(namedParam.getKey());
+                if (paramField != null) {
+                    entities = addEntity(entities, entityUriAnalyzer, paramField, namedParam.getValue());
+                }
+            }
+        }
+
+        if (entities != null) {
+            synchronized (links) {
+                links.put(new LinkKey(pageClass, params), entities);
+            }
+        }
+    }
+
+    private static List<HandedOffEntity> addEntity(List<HandedOffEntity> entities, EntityUriAnalyzer<?> entityUriAnalyzer, ParamField paramField, Object value) {
+        Class<?> entityClass;
+        Object entity;
+        if (value instanceof EntityRef<?>) {
+            EntityRef<?> entityRef = (EntityRef<?>)value;
+            if (!entityRef.isLoaded()) {
+                return entities;
+            }
+            entityClass = paramField.getEntityRefClass() != null ? paramField.getEntityRefClass() : entityRef.getEntityClass();
+            entity = entityRef.get();
+        } else if (paramField.getEntityRefClass() != null) {  // Entity given for an EntityRef field.
+            entityClass = paramField.getEntityRefClass();
+            entity = value;
+        } else if (value != null && entityUriAnalyzer.isEntityType(paramField.getType())) {
+            entityClass = paramField.getType();  // The injection looks for the field type (value may be a sub-class or a proxy).
+            entity = value;
+        } else {
+            return entities;
+        }
+        if (entity == null) {
+            return entities;
+        }
+
+        if (entities == null) {
+            entities = new ArrayList<HandedOffEntity>(2);
+        }
+        entities.add(new HandedOffEntity(entityClass, entityUriAnalyzer.getObjectEntityFragmentValue(entity), entity));
+        return entities;
+    }
+
+    /** The entities of the link to that page with these params, if it has been rendered recently. Never null. */
+    List<HandedOffEntity> getEntities(Class<?> pageClass, String params) {
+        List<HandedOffEntity> result;
+        synchronized (links) {
+            result = links.get(new LinkKey(pageClass, params));
+        }
+        return result == null ? Collections.<HandedOffEntity>emptyList() : result;
+    }
+
+    public void clear() {
+        synchronized (links) {
+            links.clear();
+        }
+    }
+
+
+    static final class HandedOffEntity {
+        final Class<?> entityClass;
+        final String pk;
+        final Object entity;
+
+        HandedOffEntity(Class<?> entityClass, String pk, Object entity) {
+            this.entityClass = entityClass;
+            this.pk = pk;
+            this.entity = entity;
+        }
+    }
+
+    private static final class LinkKey {
+        private final Class<?> pageClass;
+        private final String params;
+
+        LinkKey(Class<?> pageClass, String params) {
+            this.pageClass = pageClass;
+            this.params = params == null ? "" : params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LinkKey)) {
+                return false;
+            }
+            LinkKey other = (LinkKey)o;
+            return pageClass == other.pageClass && params.equals(other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * pageClass.hashCode() + params.hashCode();
+        }
+    }
+}
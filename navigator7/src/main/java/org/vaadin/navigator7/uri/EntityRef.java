@@ -0,0 +1,95 @@
+package org.vaadin.navigator7.uri;
+
+import java.io.Serializable;
+
+import org.vaadin.navigator7.WebApplication;
+
+/** Type of a @Param field to load the entity only when the page needs it (lazy injection).
+ * <pre>
+ *     &#64;Param(pos=0, required=true)
+ *     EntityRef&lt;Product&gt; product;
+ *     ...
+ *     String id = product.getKey();   // No DB access.
+ *     Product p = product.get();      // EntityUriAnalyzer.findEntity() is called here, the first time only.
+ * </pre>
+ * The key is checked when the params are injected (see EntityUriAnalyzer.isValidPrimaryKey()),
+ * but findEntity() is only called by get(). If no entity exists for that key, get() returns null: the page has to handle that case.
+ *
+ * Needs an EntityUriAnalyzer.
+ * Links may be built with the entity (new ParamPageResource(ProductPage.class, product)) or with an EntityRef.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ *
+ * @param <T> the entity type. It must be given in the field declaration.
+ */
+public final class EntityRef<T> implements Serializable {
+
+    private final Class<T> entityClass;
+    private final String key;
+    private transient boolean loaded;  // transient: after deserialization, the entity is loaded again.
+    private transient T entity;
+
+    private EntityRef(Class<T> entityClass, String key) {
+        this.entityClass = entityClass;
+        this.key = key;
+    }
+
+    /** Reference to the entity of that key, that will be loaded by get(). */
+    public static <T> EntityRef<T> fromKey(Class<T> entityClass, String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null");
+        }
+        return new EntityRef<T>(entityClass, key);
+    }
+
+    /** Reference to an already loaded entity (i.e. to build a link). */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityRef<T> of(T entity) {
+        String key = getEntityUriAnalyzer().getObjectEntityFragmentValue(entity);
+        EntityRef<T> result = new EntityRef<T>((Class<T>)entity.getClass(), key);
+        result.entity = entity;
+        result.loaded = true;
+        return result;
+    }
+
+    static EntityUriAnalyzer<?> getEntityUriAnalyzer() {
+        ParamUriAnalyzer paramUriAnalyzer = WebApplication.getCurrent().getUriAnalyzer();
+        if (!(paramUriAnalyzer instanceof EntityUriAnalyzer<?>)) {
+            throw new RuntimeException("EntityRef @Param fields need an EntityUriAnalyzer. Your WebApplication uses "+paramUriAnalyzer.getClass()+". " +
+                    "Set your descendant of EntityUriAnalyzer in the constructor of your WebApplication descendant.");
+        }
+        return (EntityUriAnalyzer<?>)paramUriAnalyzer;
+    }
+
+
+    /** Loads the entity the first time, through EntityUriAnalyzer.findEntity().
+     * @return null if there is no entity for that key. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public T get() {
+        if (!loaded) {
+            EntityUriAnalyzer entityUriAnalyzer = getEntityUriAnalyzer();
+            entity = (T)entityUriAnalyzer.findEntity(entityClass, key, 0, key.length());
+            loaded = true;
+        }
+        return entity;
+    }
+
+    /** true if get() has already been called (or the reference has been built from the entity). */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** The primary key, as in the URI. Available without DB access. */
+    public String getKey() {
+        return key;
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    @Override
+    public String toString() {
+        return entityClass.getSimpleName() + "#" + key;
+    }
+}
@@ -1,6 +1,25 @@
 package org.vaadin.navigator7.uri;
 
-
+import java.io.Serializable;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 
@@ -12,6 +31,14 @@ package org.vaadin.navigator7.uri;
  * It's probably the case if you use surrogate keys with JPA.
  * Else, you may have to write more specific methods in your descendant UriAnalyzer class (probably inspired from the methods here).
  * 
+ * During a request, entities are kept in an identity map: the same (entity class, pk) is given to findEntity() at most once per request,
+ * even if the page asks for it several times (positional and named params, ExtraValidator, paramChanged, reloadCurrentPage...).
+ * The map is cleared at the end of the request by NavigableApplication.transactionEnd().
+ * Between requests, entities may also be kept in an optional EntityCache shared by all the sessions (see setEntityCache()).
+ * 
+ * Only the types for which isEntityType() is true are given to findEntity(): by default, the sub-classes of <E>,
+ * or only the classes given to registerEntityClass() if you call it (necessary if <E> is Object).
+ * 
  * @author John Rizzo - BlackBeltFactory.com
  *
  * @param <E> A common ancestor class for all your entities. Could be Identifiable or BaseEntity if you have such a class. At worst, it is Object. Define this parameter in the class definition of your descendant of EntityUriAnalyzer.
@@ -20,6 +47,27 @@ public abstract class EntityUriAnalyzer<E> extends ParamUriAnalyzer {
 
     final public static String MAINID = "id";
 
+    private final Class<?> entityBaseClass = findEntityBaseClass(getClass());  // <E>, as given by the descendant class definition.
+    private final Set<Class<?>> registeredEntityClasses = new CopyOnWriteArraySet<Class<?>>();
+    /** isEntityType() result per class. Replaced at each registration, so that the types resolved before are resolved again. */
+    private volatile ClassValue<Boolean> entityTypes = newEntityTypeResolver();
+
+    // Identity map of the current request (thread). null outside of a request: findEntity() is then called each time.
+    // Values are the entities, or NOT_FOUND if findEntity() returned null (we don't ask the DB again during the same request).
+    private static final ThreadLocal<Map<EntityKey, Object>> requestEntities = new ThreadLocal<Map<EntityKey, Object>>();
+    private static final Object NOT_FOUND = new Object();
+
+    private final AtomicLong identityMapHits = new AtomicLong();
+    private final AtomicLong identityMapMisses = new AtomicLong();
+
+    protected EntityCache entityCache;  // Optional second level cache, shared by all the sessions. null = no cache.
+    private NegativeCache<EntityKey> missingEntities;  // Optional cache of the keys for which findEntity() returned null. null = no cache.
+
+    // Single flight: concurrent loads of the same (class, pk) by different threads share one findEntity() call. Disabled if timeout is 0.
+    private final ConcurrentHashMap<EntityKey, FutureTask<E>> inFlightLoads = new ConcurrentHashMap<EntityKey, FutureTask<E>>();
+    private volatile long singleFlightTimeoutNanos;
+    private final AtomicLong coalescedLoads = new AtomicLong();
+
     /** Override this method to define how to access your DB.
      * It's probably as simple as: return entityManager.find(entityClass, pk);
      * What depends much on your application is how you get a valid instance from your entityManager.
@@ -43,6 +91,110 @@ public abstract class EntityUriAnalyzer<E> extends ParamUriAnalyzer {
     public abstract E findEntity(Class<? extends E> entityClass, String pk);
 
 
+    /** Override to return true if your primary keys are longs. 
+     * Keys are then parsed directly from the URI fragment and findEntity(Class, long) is called (no String pk allocated).
+     * Values that are no valid long are still given to findEntity(Class, String) (or to your convertSpecialType(Class, String, String) for @Param fields). */
+    protected boolean useLongPrimaryKeys() {
+        return false;
+    }
+
+    /** Checks the pk [start, end[ of text without DB access. Used for EntityRef @Param fields, that are loaded later (lazily).
+     * By default, a pk is valid if it's a valid long (if useLongPrimaryKeys()), or if it is not empty.
+     * Override it if your keys have a specific format. */
+    protected boolean isValidPrimaryKey(CharSequence text, int start, int end) {
+        if (useLongPrimaryKeys()) {
+            return NumberParser.parseLong(text, start, end).isValid();
+        }
+        return start < end;
+    }
+
+    /** Called instead of findEntity(Class, String) if useLongPrimaryKeys() returns true.
+     * Override it to something like: return entityManager.find(entityClass, pk);
+     * By default, it converts the pk into a String and calls findEntity(Class, String).
+     * 
+     * @return returns null if no data found for that pk.
+     */
+    public E findEntity(Class<? extends E> entityClass, long pk) {
+        return findEntity(entityClass, Long.toString(pk));
+    }
+
+
+    /** Optional bulk version of findEntity(), to load all the entities of a page in a few queries (i.e. one "IN" query per class)
+     * instead of one findEntity() call per @Param field.
+     * Called by ParamInjector before injecting the @Param fields of a page (not for EntityRef fields, that are loaded lazily).
+     * 
+     * keys only contains types for which isEntityType() is true.
+     * 
+     * @param keys the primary keys (as in the URI) to load, per class. Don't modify it.
+     * @return null if not supported (default). Else the found entities, by pk, for each class you handled.
+     *         A pk missing from the map of its class means that there is no entity for that pk (findEntity() will not be called for it).
+     *         A class missing from the result is left to findEntity().
+     */
+    public Map<Class<?>, Map<String, E>> findEntities(Map<Class<? extends E>, Set<String>> keys) {
+        return null;
+    }
+
+
+    /** Restricts the types given to findEntity() to the registered classes (and their sub-classes).
+     * Without registration, all the sub-classes of <E> are considered as entities.
+     * Typically called from the constructor of your descendant. */
+    public void registerEntityClass(Class<? extends E> entityClass) {
+        registeredEntityClasses.add(entityClass);
+        entityTypes = newEntityTypeResolver();
+    }
+
+    /** true if values of that type are loaded through findEntity() and written in URIs through getEntityFragmentValue().
+     * Computed once per class: types that are no entities never reach findEntity() (and no ClassCastException is used to detect them). */
+    public boolean isEntityType(Class<?> type) {
+        return entityTypes.get(type);
+    }
+
+    private ClassValue<Boolean> newEntityTypeResolver() {
+        return new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                return computeIsEntityType(type);
+            }
+        };
+    }
+
+    /** Override it if you have a better way to know your entities (as a @javax.persistence.Entity annotation).
+     * Called once per type. */
+    protected boolean computeIsEntityType(Class<?> type) {
+        if (type.isPrimitive() || type.isEnum() || type.isArray() || type == EntityRef.class
+                || ParamConverterRegistry.isBasicType(type)) {
+            return false;
+        }
+        if (!registeredEntityClasses.isEmpty()) {
+            for (Class<?> entityClass : registeredEntityClasses) {
+                if (entityClass.isAssignableFrom(type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return entityBaseClass.isAssignableFrom(type);
+    }
+
+    /** Returns <E> from the class definition of the descendant (i.e. BaseEntity for "MyUriAnalyzer extends EntityUriAnalyzer<BaseEntity>"),
+     * or Object if it cannot be known (then any non basic type is considered as an entity, unless you use registerEntityClass()). */
+    private static Class<?> findEntityBaseClass(Class<?> analyzerClass) {
+        for (Class<?> clazz = analyzerClass; clazz != null && clazz != EntityUriAnalyzer.class; clazz = clazz.getSuperclass()) {
+            Type superType = clazz.getGenericSuperclass();
+            if (superType instanceof ParameterizedType && ((ParameterizedType)superType).getRawType() == EntityUriAnalyzer.class) {
+                Type argument = ((ParameterizedType)superType).getActualTypeArguments()[0];
+                if (argument instanceof Class<?>) {
+                    return (Class<?>)argument;
+                } else if (argument instanceof ParameterizedType && ((ParameterizedType)argument).getRawType() instanceof Class<?>) {
+                    return (Class<?>)((ParameterizedType)argument).getRawType();
+                }
+                break;  // Type variable: <E> is given further (i.e. at instantiation) and we cannot know it.
+            }
+        }
+        return Object.class;
+    }
+
+
     /** Override this method to tell how to convert an entity into a String that we can put in a URI.
      * You probably return the primary key of your entity (the field with @Id if you use JPA/Hibernate)
      * 
@@ -64,12 +216,16 @@ public abstract class EntityUriAnalyzer<E> extends ParamUriAnalyzer {
 
     
     public E getEntity(String params, String key, Class<? extends E> entityClass) {
-        E entity = null;
-        String id = getString(params, key); 
-        if (id != null) { 
-            entity = findEntity(entityClass, id);
+        return getEntity(parseFragment(params), key, entityClass);
+    }
+
+    /** Idem getEntity(String, String, Class), on an already parsed fragment. */
+    public E getEntity(ParsedFragment params, String key, Class<? extends E> entityClass) {
+        int index = params.getNamedIndex(key);
+        if (index < 0) {
+            return null;
         }
-        return entity;
+        return findEntity(entityClass, params.getFragment(), params.getValueStart(index), params.getValueEnd(index));
     }
 
     
@@ -84,12 +240,326 @@ public abstract class EntityUriAnalyzer<E> extends ParamUriAnalyzer {
 
     
     public E getEntity(String params, int position, Class<? extends E> entityClass) {
-        E entity = null;
-        String id = getString(params, position); 
-        if (id != null) { 
-            entity = findEntity(entityClass, id);
+        return getEntity(parseFragment(params), position, entityClass);
+    }
+
+    /** Idem getEntity(String, int, Class), on an already parsed fragment. */
+    public E getEntity(ParsedFragment params, int position, Class<? extends E> entityClass) {
+        int index = params.getPositionIndex(position);
+        if (index < 0) {
+            return null;
+        }
+        return findEntity(entityClass, params.getFragment(), params.getValueStart(index), params.getValueEnd(index));
+    }
+
+    /** The pk is the range [start, end[ of text. 
+     * Calls findEntity(Class, long) without substring if useLongPrimaryKeys() and the pk is a valid long, else findEntity(Class, String).
+     * During a request, the result is taken from (or put into) the identity map of the request. */
+    @SuppressWarnings("unchecked")
+    protected E findEntity(Class<? extends E> entityClass, CharSequence text, int start, int end) {
+        ParseResult longPk = useLongPrimaryKeys() ? NumberParser.parseLong(text, start, end) : ParseResult.INVALID;
+        String stringPk = longPk.isValid() ? null : text.subSequence(start, end).toString();
+
+        Map<EntityKey, Object> entities = requestEntities.get();
+        if (entities == null) {  // Not in a request (i.e. background thread).
+            return loadEntity(entityClass, longPk, stringPk);
+        }
+
+        EntityKey entityKey = longPk.isValid() ? new EntityKey(entityClass, longPk.getLong()) : new EntityKey(entityClass, stringPk);
+        Object cached = entities.get(entityKey);
+        if (cached != null) {
+            identityMapHits.incrementAndGet();
+            return cached == NOT_FOUND ? null : (E)cached;
+        }
+
+        identityMapMisses.incrementAndGet();
+        E result = loadEntity(entityClass, longPk, stringPk);
+        entities.put(entityKey, result == null ? NOT_FOUND : result);
+        return result;
+    }
+
+    /** Puts the entities of the given keys in the identity map of the request, with one call to findEntities() for the keys
+     * that are not already in the identity map or in the EntityCache.
+     * Does nothing outside a request, or if findEntities() is not supported. Keys left out are loaded by findEntity() later, as usual. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    void prefetchEntities(Map<Class<?>, Set<String>> keys) {
+        Map<EntityKey, Object> entities = requestEntities.get();
+        if (entities == null) {
+            return;
+        }
+        EntityCache cache = entityCache;
+
+        Map<Class<? extends E>, Set<String>> missingKeys = new HashMap<Class<? extends E>, Set<String>>();
+        Map<Class<?>, Long> cacheGenerations = new HashMap<Class<?>, Long>();  // Read before the DB access (see EntityCache.getGeneration()).
+        for (Map.Entry<Class<?>, Set<String>> classKeys : keys.entrySet()) {
+            Class<? extends E> entityClass = (Class<? extends E>)classKeys.getKey();
+            boolean cached = cache != null && cache.isConfigured(entityClass);
+            if (cached) {
+                cacheGenerations.put(entityClass, cache.getGeneration(entityClass));
+            }
+            for (String pk : classKeys.getValue()) {
+                EntityKey entityKey = newEntityKey(entityClass, pk);
+                if (entities.containsKey(entityKey)) {
+                    continue;
+                }
+                if (missingEntities != null && missingEntities.contains(entityKey)) {
+                    entities.put(entityKey, NOT_FOUND);
+                    continue;
+                }
+                Object entity = cached ? cache.probe(entityClass, entityKey.getPk()) : null;  // A miss is counted once, by whoever loads the entity.
+                if (entity != null) {
+                    entities.put(entityKey, entity);
+                    continue;
+                }
+                Set<String> pks = missingKeys.get(entityClass);
+                if (pks == null) {
+                    missingKeys.put(entityClass, pks = new HashSet<String>());
+                }
+                pks.add(pk);
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return;
+        }
+
+        Map<Class<?>, Map<String, E>> found = findEntities(missingKeys);
+        if (found == null) {  // Not supported.
+            return;
+        }
+        for (Map.Entry<Class<? extends E>, Set<String>> classKeys : missingKeys.entrySet()) {
+            Class<? extends E> entityClass = classKeys.getKey();
+            Map<String, E> foundEntities = found.get(entityClass);
+            if (foundEntities == null) {  // Not handled by findEntities(): findEntity() will be called.
+                continue;
+            }
+            boolean cached = cacheGenerations.containsKey(entityClass);
+            for (String pk : classKeys.getValue()) {
+                E entity = foundEntities.get(pk);
+                EntityKey entityKey = newEntityKey(entityClass, pk);
+                identityMapMisses.incrementAndGet();
+                entities.put(entityKey, entity == null ? NOT_FOUND : entity);
+                if (cached) {
+                    cache.countMiss(entityClass);
+                }
+                if (entity != null && cached) {
+                    cache.put(entityClass, entityKey.getPk(), entity, cacheGenerations.get(entityClass));
+                } else if (entity == null && missingEntities != null) {
+                    missingEntities.add(entityKey);
+                }
+            }
+        }
+    }
+
+    /** Starts loading, on executor, the entities of the given keys that are not in the identity map of the request yet (one task per key).
+     * Tasks call findEntity() (through the EntityCache and the missing entity cache) from executor threads: your findEntity() must not depend on the request thread
+     * (i.e. on an EntityManager kept in a ThreadLocal).
+     * If executor throws anything else than a RejectedExecutionException, the tasks already submitted are cancelled and the exception is thrown.
+     * @return null if there is nothing to load, or outside a request. Call PendingEntities.join() from the request thread before using the entities. */
+    @SuppressWarnings("unchecked")
+    PendingEntities loadEntitiesAsync(Map<Class<?>, Set<String>> keys, ExecutorService executor) {
+        Map<EntityKey, Object> entities = requestEntities.get();
+        if (entities == null) {
+            return null;
+        }
+        final PendingEntities pending = new PendingEntities();
+        for (Map.Entry<Class<?>, Set<String>> classKeys : keys.entrySet()) {
+            final Class<? extends E> entityClass = (Class<? extends E>)classKeys.getKey();
+            for (String pk : classKeys.getValue()) {
+                final EntityKey entityKey = newEntityKey(entityClass, pk);
+                if (entities.containsKey(entityKey)) {
+                    continue;
+                }
+                try {
+                    Future<E> future = executor.submit(new Callable<E>() {
+                        @Override
+                        public E call() {
+                            return loadEntity(entityClass, entityKey.stringPk == null ? ParseResult.ofLong(entityKey.longPk) : ParseResult.INVALID, entityKey.stringPk, pending);
+                        }
+                    });
+                    pending.add(entityKey, future);
+                } catch (RejectedExecutionException e) {
+                    // Executor saturated: that entity will be loaded by the request thread, during the injection.
+                } catch (RuntimeException e) {
+                    pending.cancel();
+                    throw e;
+                } catch (Error e) {
+                    pending.cancel();
+                    throw e;
+                }
+            }
+        }
+        return pending.isEmpty() ? null : pending;
+    }
+
+    /** Entities being loaded by loadEntitiesAsync(). */
+    public final class PendingEntities {
+        private final List<EntityKey> entityKeys = new ArrayList<EntityKey>();
+        private final List<Future<E>> futures = new ArrayList<Future<E>>();
+        private volatile boolean cancelled;  // Tasks still running don't put their entity in the caches anymore (the request thread loads it again).
+
+        private PendingEntities() {
+        }
+
+        private void add(EntityKey entityKey, Future<E> future) {
+            entityKeys.add(entityKey);
+            futures.add(future);
+        }
+
+        private boolean isEmpty() {
+            return futures.isEmpty();
+        }
+
+        /** Waits for the loading tasks and puts their entities in the identity map of the request (to be called from the request thread).
+         * A task that failed is ignored: its entity is loaded again by the request thread when needed (and the exception is thrown there).
+         * Idem for the tasks not finished within timeout (for all the tasks together): they are cancelled, so that a slow findEntity()
+         * never holds the request thread (and the session lock) longer than the sequential loading would.
+         * A cancelled task that is already running cannot be stopped, but its entity is dropped: it does not go into the EntityCache
+         * (nor the missing entity cache) concurrently with the one loaded again by the request thread. */
+        public void join(long timeout, TimeUnit unit) {
+            Map<EntityKey, Object> entities = requestEntities.get();
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (int i = 0; i < futures.size(); i++) {
+                E entity;
+                try {
+                    entity = futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException e) {
+                    continue;
+                } catch (TimeoutException e) {
+                    cancelled = true;
+                    futures.get(i).cancel(false);
+                    continue;  // Loaded by the request thread, during the injection.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    return;  // Remaining entities will be loaded by the request thread.
+                }
+                identityMapMisses.incrementAndGet();
+                if (entities != null) {
+                    entities.put(entityKeys.get(i), entity == null ? NOT_FOUND : entity);
+                }
+            }
         }
-        return entity;
+
+        /** Cancels the loading tasks, i.e. when the navigation has been interrupted. */
+        public void cancel() {
+            cancelled = true;
+            for (Future<E> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private E callFindEntity(Class<? extends E> entityClass, ParseResult longPk, String stringPk) {
+        return longPk.isValid() ? findEntity(entityClass, longPk.getLong()) : findEntity(entityClass, stringPk);
+    }
+
+    /** The first thread asking for a (class, pk) calls findEntity(). The threads asking for the same key meanwhile wait for its result
+     * (at most singleFlightTimeout, then they call findEntity() themselves). */
+    private E findEntitySingleFlight(final Class<? extends E> entityClass, final ParseResult longPk, final String stringPk) {
+        EntityKey entityKey = longPk.isValid() ? new EntityKey(entityClass, longPk.getLong()) : new EntityKey(entityClass, stringPk);
+        FutureTask<E> task = new FutureTask<E>(new Callable<E>() {
+            @Override
+            public E call() {
+                return callFindEntity(entityClass, longPk, stringPk);
+            }
+        });
+
+        FutureTask<E> inFlight = inFlightLoads.putIfAbsent(entityKey, task);
+        if (inFlight == null) {  // We are the first: we load it.
+            try {
+                task.run();
+            } finally {
+                inFlightLoads.remove(entityKey, task);
+            }
+            inFlight = task;
+        } else {
+            coalescedLoads.incrementAndGet();
+        }
+
+        try {
+            return inFlight.get(singleFlightTimeoutNanos, TimeUnit.NANOSECONDS);  // Immediate if we ran it.
+        } catch (TimeoutException e) {  // The other thread is too slow (DB lock?): we don't wait more.
+            return callFindEntity(entityClass, longPk, stringPk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the loading of entity "+entityClass.getSimpleName()+" "+entityKey.getPk()+" by another thread.", e);
+        } catch (ExecutionException e) {  // findEntity() threw an exception (in our thread or in the other one).
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /** Puts the entities handed off by a link (see EntityHandoff) in the identity map of the request, if they are not already there. */
+    void putRequestEntities(List<EntityHandoff.HandedOffEntity> handedOffEntities) {
+        Map<EntityKey, Object> entities = requestEntities.get();
+        if (entities == null) {
+            return;
+        }
+        for (EntityHandoff.HandedOffEntity handedOffEntity : handedOffEntities) {
+            EntityKey entityKey = newEntityKey(handedOffEntity.entityClass, handedOffEntity.pk);
+            if (!entities.containsKey(entityKey)) {
+                entities.put(entityKey, handedOffEntity.entity);
+            }
+        }
+    }
+
+    private EntityKey newEntityKey(Class<?> entityClass, String pk) {
+        if (useLongPrimaryKeys()) {
+            ParseResult longPk = NumberParser.parseLong(pk);
+            if (longPk.isValid()) {
+                return new EntityKey(entityClass, longPk.getLong());
+            }
+        }
+        return new EntityKey(entityClass, pk);
+    }
+
+    /** From the EntityCache if any, else from findEntity(). */
+    private E loadEntity(Class<? extends E> entityClass, ParseResult longPk, String stringPk) {
+        return loadEntity(entityClass, longPk, stringPk, null);
+    }
+
+    /** Idem, from a task of loadEntitiesAsync(): the result is not cached if pending has been cancelled meanwhile.
+     * @param pending null if called by the request thread. */
+    @SuppressWarnings("unchecked")
+    private E loadEntity(Class<? extends E> entityClass, ParseResult longPk, String stringPk, PendingEntities pending) {
+        NegativeCache<EntityKey> missing = missingEntities;
+        EntityKey missingKey = null;
+        if (missing != null) {
+            missingKey = longPk.isValid() ? new EntityKey(entityClass, longPk.getLong()) : new EntityKey(entityClass, stringPk);
+            if (missing.contains(missingKey)) {  // Known as missing: no DB access.
+                return null;
+            }
+        }
+
+        EntityCache cache = entityCache;
+        Object cacheKey = null;
+        long cacheGeneration = 0;
+        if (cache != null && cache.isConfigured(entityClass)) {
+            cacheKey = longPk.isValid() ? (Object)Long.valueOf(longPk.getLong()) : stringPk;
+            cacheGeneration = cache.getGeneration(entityClass);  // Before the DB access: an invalidation during the load prevents the put.
+            Object cached = cache.get(entityClass, cacheKey);
+            if (cached != null) {
+                return (E)cached;
+            }
+        }
+
+        E result = singleFlightTimeoutNanos > 0 ? findEntitySingleFlight(entityClass, longPk, stringPk)
+                                                : callFindEntity(entityClass, longPk, stringPk);
+
+        if (pending != null && pending.cancelled) {  // Given up by the request thread, that loads (and caches) it again.
+            return result;
+        }
+        if (result != null && cacheKey != null) {
+            cache.put(entityClass, cacheKey, result, cacheGeneration);
+        } else if (result == null && missingKey != null) {
+            missing.add(missingKey);
+        }
+        return result;
     }
 
     public E getMandatoryEntity(String params, int position, Class<? extends E> entityClass) {
@@ -140,26 +610,140 @@ public abstract class EntityUriAnalyzer<E> extends ParamUriAnalyzer {
     }
 
      */
+    @SuppressWarnings("unchecked")
     @Override
     public Object convertSpecialType(Class<?> type, String valueStr, String fragment) {
 
-        // Check if type is a subtype of E
-        Class<E> eeeClass = null;
-        try {
-            eeeClass = (Class<E>)type;
-        } catch (Exception e) {
-            // It's not an entity eeeClass is still null;
-            // We do nothing, it's noraml.
-        }
-        
-        // Try to convert with findEntity.
+        // Try to convert with findEntity, if type is an entity type.
         Object result = null;
-        if (eeeClass != null) {
-            result = findEntity(eeeClass, valueStr);
+        if (isEntityType(type)) {
+            result = findEntity((Class<E>)type, valueStr, 0, valueStr.length());
         }
         
         // Maybe result is still null => descendent may try further to convert.
         return result;
     }
+
+    /** If useLongPrimaryKeys() and the value is a valid long, calls findEntity(Class, long) with the key parsed from the fragment (through the identity map).
+     * Else calls convertSpecialType(Class, String, String) as the other analyzers. */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object convertSpecialType(Class<?> type, CharSequence text, int start, int end) {
+        if (useLongPrimaryKeys() && isEntityType(type)) {
+            ParseResult pk = NumberParser.parseLong(text, start, end);
+            if (pk.isValid()) {
+                return findEntity((Class<E>)type, text, start, end);
+            }
+        }
+        return super.convertSpecialType(type, text, start, end);
+    }
     
+
+
+    
+    ////////////////////////////////////////////////////////////////////////////////////////
+    /////////////////////////////// Identity map and cache /////////////////////////////////
+
+    /** Called by NavigableApplication.transactionStart(): entities found from now on are kept until endRequest(). */
+    public static void beginRequest() {
+        requestEntities.set(new HashMap<EntityKey, Object>());
+    }
+
+    /** Called by NavigableApplication.transactionEnd(): forgets the entities of the request (they may be detached or stale in the next one). */
+    public static void endRequest() {
+        requestEntities.remove();
+    }
+
+    /** Sets the optional second level cache, shared by all the sessions. null to remove it.
+     * Typically called from the constructor of your WebApplication descendant, after configuring the cached entity classes. */
+    public void setEntityCache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    /** null if there is no second level cache. Use it to invalidate modified entities. */
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    /** Remembers the (class, pk) for which findEntity() found nothing, during timeToLive, and at most maxSize of them:
+     * repeated URLs with deleted or invented ids are then rejected without DB access (crawlers, URL hacking).
+     * Until timeToLive is over, an entity created with such a pk is not found, unless you call forgetMissingEntity().
+     * Typically called from the constructor of your WebApplication descendant. Disabled by default. */
+    public void enableMissingEntityCache(int maxSize, long timeToLive, TimeUnit unit) {
+        this.missingEntities = new NegativeCache<EntityKey>(maxSize, timeToLive, unit);
+    }
+
+    /** Call it when you create an entity, if its pk could have been requested before (i.e. pks from a natural key). */
+    public void forgetMissingEntity(Class<? extends E> entityClass, String pk) {
+        NegativeCache<EntityKey> missing = missingEntities;
+        if (missing != null) {
+            missing.remove(newEntityKey(entityClass, pk));
+        }
+    }
+
+    /** When many sessions ask for the same entity at the same time (i.e. a promoted product), only one of them calls findEntity(),
+     * the others wait for its result (at most timeout, then they call findEntity() themselves).
+     * The same entity instance is then given to several threads: only enable it if your entities may be shared (i.e. detached JPA entities that pages don't modify).
+     * Disabled by default. Call it with a timeout of 0 to disable it. */
+    public void enableSingleFlightLoading(long timeout, TimeUnit unit) {
+        this.singleFlightTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /** Number of loads that waited for another thread's findEntity() call instead of calling it. */
+    public long getCoalescedLoadCount() {
+        return coalescedLoads.get();
+    }
+
+    /** Number of entities taken from the identity map of the request, without calling findEntity(). */
+    public long getIdentityMapHits() {
+        return identityMapHits.get();
+    }
+
+    /** Number of calls to findEntity() made through the identity map (= distinct (entity class, pk) per request). */
+    public long getIdentityMapMisses() {
+        return identityMapMisses.get();
+    }
+
+    /** Key of the identity map: entity class + pk (as a long if useLongPrimaryKeys(), to not allocate a String). */
+    private static final class EntityKey implements Serializable {
+        private final Class<?> entityClass;
+        private final String stringPk;  // null for a long pk.
+        private final long longPk;
+
+        EntityKey(Class<?> entityClass, String stringPk) {
+            this.entityClass = entityClass;
+            this.stringPk = stringPk;
+            this.longPk = 0;
+        }
+
+        EntityKey(Class<?> entityClass, long longPk) {
+            this.entityClass = entityClass;
+            this.stringPk = null;
+            this.longPk = longPk;
+        }
+
+        /** Key in the EntityCache: a Long or a String, as in findEntity(). */
+        Object getPk() {
+            return stringPk == null ? (Object)Long.valueOf(longPk) : stringPk;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EntityKey)) {
+                return false;
+            }
+            EntityKey other = (EntityKey)o;
+            return entityClass == other.entityClass
+                    && longPk == other.longPk
+                    && (stringPk == null ? other.stringPk == null : stringPk.equals(other.stringPk));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = entityClass.hashCode();
+            result = 31 * result + (stringPk == null ? (int)(longPk ^ (longPk >>> 32)) : stringPk.hashCode());
+            return result;
+        }
+    }
+
 }
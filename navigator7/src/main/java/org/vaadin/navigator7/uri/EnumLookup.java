@@ -0,0 +1,94 @@
+package org.vaadin.navigator7.uri;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** Name to constant (and constant to name) tables of an enum used as @Param field type.
+ * Built once per enum class, from the constant names, the @ParamAlias names and the @ParamEnum options.
+ * Conversion is a single map (or array) access, without the Enum.valueOf() IllegalArgumentException for invalid names.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class EnumLookup {
+
+    private static final ClassValue<EnumLookup> LOOKUPS = new ClassValue<EnumLookup>() {
+        @Override
+        protected EnumLookup computeValue(Class<?> type) {
+            return new EnumLookup(type);
+        }
+    };
+
+    /** Returns the (cached) lookup of the given enum class. */
+    public static EnumLookup forClass(Class<?> enumClass) {
+        if (!enumClass.isEnum()) {
+            throw new IllegalArgumentException(enumClass + " is no enum.");
+        }
+        return LOOKUPS.get(enumClass);
+    }
+
+
+    private final Class<?> enumClass;
+    private final boolean ignoreCase;
+    private final Map<String, Enum<?>> constantsByName;  // Keys in lower case if ignoreCase.
+    private final String[] namesByOrdinal;
+
+    private EnumLookup(Class<?> enumClass) {
+        this.enumClass = enumClass;
+        ParamEnum paramEnum = enumClass.getAnnotation(ParamEnum.class);
+        this.ignoreCase = paramEnum != null && paramEnum.ignoreCase();
+
+        Object[] constants = enumClass.getEnumConstants();
+        this.constantsByName = new HashMap<String, Enum<?>>();
+        this.namesByOrdinal = new String[constants.length];
+        for (Object constant : constants) {
+            Enum<?> enumConstant = (Enum<?>)constant;
+            namesByOrdinal[enumConstant.ordinal()] = enumConstant.name();
+            addName(enumConstant.name(), enumConstant);
+
+            ParamAlias paramAlias = getConstantField(enumConstant).getAnnotation(ParamAlias.class);
+            if (paramAlias != null) {
+                for (String alias : paramAlias.value()) {
+                    addName(alias, enumConstant);
+                }
+            }
+        }
+    }
+
+    private void addName(String name, Enum<?> constant) {
+        Enum<?> existing = constantsByName.put(toKey(name), constant);
+        if (existing != null && existing != constant) {
+            throw new RuntimeException("In enum "+enumClass+", the name '"+name+"' is used by two constants: " +
+                    existing.name() + " and " + constant.name() + (ignoreCase ? " (case is ignored because of @ParamEnum(ignoreCase=true))" : "") +
+                    ". Please change one of the @ParamAlias.");
+        }
+    }
+
+    private Field getConstantField(Enum<?> constant) {
+        try {
+            return enumClass.getField(constant.name());
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException("Enum constant "+constant.name()+" has no field in "+enumClass+". It's a bug (impossible case?)", e);
+        }
+    }
+
+    private String toKey(String name) {
+        return ignoreCase ? name.toLowerCase(Locale.ENGLISH) : name;
+    }
+
+
+    public Class<?> getEnumClass() {
+        return enumClass;
+    }
+
+    /** @return null if no constant has that name or alias. */
+    public Enum<?> fromString(String name) {
+        return constantsByName.get(toKey(name));
+    }
+
+    /** @return the name() of the constant. */
+    public String toString(Enum<?> constant) {
+        return namesByOrdinal[constant.ordinal()];
+    }
+}
@@ -0,0 +1,249 @@
+package org.vaadin.navigator7.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.vaadin.navigator7.WebApplication;
+
+/** Precompiled recipe to write the params fragment of a page (as "123/abc/userId=44"), built once per page class by ParamUriAnalyzer.getFragmentTemplate().
+ * The fragment is written in one StringBuilder, presized with the length of the previous fragments of that page.
+ * The type accepted by each field (the wrapper type for a primitive field) and the "name=" prefix of each named field are computed once here,
+ * instead of for every link.
+ *
+ * Produces the same result as successive calls to ParamUriAnalyzer.addFragment() with the separators of the analyzer.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class FragmentTemplate {
+
+    private final Class<?> annotatedClass;
+    private final String paramsSeparator;
+    private final List<Slot> positionalSlots;   // Index = position.
+    private final List<Slot> namedSlots;        // Definition order of the fields.
+    private final Map<String, Slot> namedSlotsByName;
+    private volatile int lengthHint = 16;       // Max length of the fragments already produced by this template.
+
+    FragmentTemplate(ParamClassDescriptor descriptor, String paramsSeparator, String valueSeparator) {
+        this.annotatedClass = descriptor.getAnnotatedClass();
+        this.paramsSeparator = paramsSeparator;
+
+        List<Slot> positional = new ArrayList<Slot>();
+        for (ParamField paramField : descriptor.getPositionalFields()) {
+            positional.add(new Slot(paramField, null));
+        }
+        List<Slot> named = new ArrayList<Slot>();
+        Map<String, Slot> byName = new HashMap<String, Slot>();
+        for (ParamField paramField : descriptor.getNamedFields().values()) {
+            Slot slot = new Slot(paramField, paramField.getName() + valueSeparator);
+            named.add(slot);
+            byName.put(paramField.getName(), slot);
+        }
+        this.positionalSlots = Collections.unmodifiableList(positional);
+        this.namedSlots = Collections.unmodifiableList(named);
+        this.namedSlotsByName = byName;
+    }
+
+
+    /** One @Param field, with what is needed to write it. */
+    private static class Slot {
+        final ParamField paramField;
+        final Class<?> acceptedType;  // Values must be instances of that type. Wrapper type for primitive fields.
+        final Class<?> entityType;    // For an EntityRef<T> field, values may also be instances of T. Else null.
+        final String prefix;          // "name=" for a named field, null for a positional field.
+
+        Slot(ParamField paramField, String prefix) {
+            this.paramField = paramField;
+            this.acceptedType = toWrapperType(paramField.getType());
+            this.entityType = paramField.getEntityRefClass();
+            this.prefix = prefix;
+        }
+
+        boolean accepts(Object value) {
+            return acceptedType.isInstance(value) || (entityType != null && entityType.isInstance(value));
+        }
+    }
+
+    private static Class<?> toWrapperType(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == char.class) {
+            return Character.class;
+        } else {
+            return Void.class;
+        }
+    }
+
+
+    /** Same contract as ParamInjector.generateFragment(Class, Object[], Map).
+     * @return null if there is no value at all. */
+    public String generate(Object[] posParams, Map<String, Object> namedParams) {
+        
+        /// We detect if too many parameters have been provided.
+        if (positionalSlots.size() < posParams.length) {
+            throw new RuntimeException("In class "+annotatedClass+", you have defined "+positionalSlots.size()+" 'positional' field(s). "+
+                    "But you provide "+posParams.length+" (more = too many) parameter values.");
+        }
+
+        /// Is there a required named field for which we provide no value?
+        for (Slot slot : namedSlots) {
+            if (slot.paramField.isRequired() && (namedParams == null || namedParams.get(slot.paramField.getName()) == null)) {
+                throw new RuntimeException("In class "+annotatedClass+", the named field " + slot.paramField + 
+                        " is required. But your provide no parameter with name "+slot.paramField.getName());
+            }
+        }
+
+        StringBuilder fragment = new StringBuilder(lengthHint);
+        
+        /// The posParams build the first half of the fragment.
+        for (int pos = 0; pos < posParams.length; pos++) {
+            Object value = posParams[pos];
+            Slot slot = positionalSlots.get(pos);
+            if (value == null) {
+                if (slot.paramField.isRequired()) {
+                    throw new RuntimeException("In class "+annotatedClass+", the field "+ slot.paramField +" is required at position "+pos
+                           + " but you have provided a null value for that position.");
+                }
+                appendSeparator(fragment);  // In the resulting string, we'll have ".../previousVal//nextVal/..."
+            } else {  // there is a value
+                if (!slot.accepts(value)) {  // Not compatible
+                    throw new RuntimeException("In class "+annotatedClass+", the field "+ slot.paramField
+                            + " of type "+ slot.paramField.getType() +" is not compatible with the provided parameter value "
+                            + " which is of type "+value.getClass()+", and of value '"+value+"'.");
+                }
+                appendSeparator(fragment);
+                fragment.append(convertValueToString(slot, value));
+            }
+        }
+        boolean empty = posParams.length == 0;
+
+        /// The namedParams build the second half of the fragment.
+        if (namedParams != null) {
+            for (Map.Entry<String, Object> entry : namedParams.entrySet()) {
+                Slot slot = namedSlotsByName.get(entry.getKey());
+                if (slot == null) {
+                    throw new RuntimeException(
+                            "You provide a named parameter (name="+entry.getKey()+")," +
+                            " but there is no @Param anotated named field with that name "+
+                            "in class "+annotatedClass+".");
+                }
+                Object value = entry.getValue();
+                if (value == null) {  // Optional field (required ones have been checked above): no "name=" in the fragment, as in generate(Object).
+                    continue;
+                }
+                if (!slot.accepts(value)) {
+                    throw new RuntimeException("Parameter value '"+value+"' provided for field '"+slot.paramField+"' has no compatible type. " +
+                            "Value type = "+(value == null ? null : value.getClass())+". Field type = "+slot.paramField.getType()+
+                            " It's probably a bug in your code (when creating a link to a ParamPage?).");
+                }
+                appendSeparator(fragment);
+                fragment.append(slot.prefix).append(convertValueToString(slot, value));
+                empty = false;
+            }
+        }
+        
+        return empty ? null : toString(fragment);
+    }
+
+
+    /** Same contract as ParamInjector.generateFragment(Object): the values are read from the @Param fields of annotatedObject.
+     * When a positional field has no value, a named value takes its place.
+     * @return "" if there is no value at all. */
+    public String generate(Object annotatedObject) {
+        // Lists (correct order for the result String) of fields having a value.
+        List<Slot> posSlotList = new ArrayList<Slot>(positionalSlots.size());
+        for (Slot slot : positionalSlots) {
+            if (hasValue(annotatedObject, slot.paramField)) {
+                posSlotList.add(slot);
+            }
+        }
+        List<Slot> nameSlotList = new ArrayList<Slot>(namedSlots.size());
+        for (Slot slot : namedSlots) {
+            if (hasValue(annotatedObject, slot.paramField)) {
+                nameSlotList.add(slot);
+            }
+        }
+
+        // We loop for the values of positionned field. When there is a "hole" (between 2 positions), we insert a named value.
+        StringBuilder fragment = new StringBuilder(lengthHint);
+        int currentPosInFragment = 0;  // +1 each time we append a value to the fragment
+        Iterator<Slot> posIter = posSlotList.iterator();  // Positional params, ordered by position.
+        Iterator<Slot> nameIter = nameSlotList.iterator(); // Iterator on the names parameters.
+        while (posIter.hasNext() || nameIter.hasNext() ) {  // While some value has to be inserted in the fragment.
+            Slot nextPosSlot = posIter.hasNext() ? posIter.next() : null;
+
+            // Fill with named params until nextPos
+            while ((nextPosSlot == null && nameIter.hasNext())  // there is no positional param by well named param 
+                    ||  (nextPosSlot != null && currentPosInFragment < nextPosSlot.paramField.getPosition())) {  // We have a free place (non taken by a positional param)
+                // Let's insert a named parameter.
+                if (nameIter.hasNext()) {  // There is one more named param
+                    Slot namedSlot = nameIter.next();
+                    appendSeparator(fragment);
+                    fragment.append(namedSlot.prefix).append(ParamInjector.convertFieldToString(annotatedObject, namedSlot.paramField));
+                    currentPosInFragment++;
+                } else {
+                    throw new RuntimeException("No value to provide at position " + currentPosInFragment
+                            + " (no positional parameter, and no more names parameter). It's a kind of 'hole' in your UriParam definition.");
+                }
+            }
+
+            // Add nextPos
+            if (nextPosSlot != null) {
+                appendSeparator(fragment);
+                fragment.append(ParamInjector.convertFieldToString(annotatedObject, nextPosSlot.paramField));
+                currentPosInFragment++;
+            }
+        }
+        return toString(fragment);
+    }
+
+
+    /** true if the field is a primitive or contains a non null value.
+     * Throws an exception if a required field has no value. */
+    private static boolean hasValue(Object annotatedObject, ParamField paramField) {
+        if (paramField.getType().isPrimitive()) {
+            return true;
+        }
+        Object value = paramField.getAccessor().get(annotatedObject);
+        if (paramField.isRequired() && value == null) {
+            throw new RuntimeException("Missing value for required field " + paramField + ". Please provide a (non null) value or user @Param(required=false).");
+        }
+        return value != null;
+    }
+
+    /** As ParamUriAnalyzer.addFragment(): no separator before the first (non empty) value. */
+    private void appendSeparator(StringBuilder fragment) {
+        if (fragment.length() > 0) {
+            fragment.append(paramsSeparator);
+        }
+    }
+
+    private String convertValueToString(Slot slot, Object value) {
+        ParamConverter<?> converter = WebApplication.getCurrent().getParamConverters().get(slot.paramField.getType());
+        return ParamInjector.convertValueToString(converter, value);
+    }
+
+    private String toString(StringBuilder fragment) {
+        if (fragment.length() > lengthHint) {
+            lengthHint = fragment.length();
+        }
+        return fragment.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package org.vaadin.navigator7.uri;
+
+/** Reads the @Param fields of one page class without reflection, to write them in a fragment (when building links).
+ * Implementations are generated at compile time by the navigator7-apt annotation processor, as [PageClass]_FragmentWriter
+ * in the package of the page, together with the ParamsInjector of the page.
+ *
+ * Fields are identified by their index in getFieldKeys() (same order as ParamsInjector.getFieldKeys()).
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public interface FragmentWriter {
+
+    /** Suffix appended to the page class name to get the generated class name. */
+    public static final String GENERATED_SUFFIX = "_FragmentWriter";
+
+    /** "declaringClassName#fieldName" for each @Param field. The position in the array is the index given to the other methods. */
+    public String[] getFieldKeys();
+
+    public Object get(Object page, int index);
+
+    public int getInt(Object page, int index);
+
+    public long getLong(Object page, int index);
+
+    public double getDouble(Object page, int index);
+
+    public boolean getBoolean(Object page, int index);
+}
@@ -0,0 +1,85 @@
+package org.vaadin.navigator7.uri;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** Remembers, for a limited time, the keys for which we found nothing (deleted or nonexistent entity ids),
+ * so that repeated bad URLs (crawlers, URL hacking) are rejected without asking the DB again.
+ * Used by EntityUriAnalyzer.enableMissingEntityCache().
+ * Bounded: when full, expired keys are removed first, then arbitrary keys (a forgotten key just costs one more lookup).
+ * Thread safe, without global lock.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ *
+ * @param <K> the key type. It must implement equals() and hashCode().
+ */
+public class NegativeCache<K> implements Serializable {
+
+    private final int maxSize;
+    private final long timeToLiveMillis;
+    private final ConcurrentHashMap<K, Long> expirations = new ConcurrentHashMap<K, Long>();
+
+    /** @param timeToLive duration during which a missing key is considered as still missing. */
+    public NegativeCache(int maxSize, long timeToLive, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: "+maxSize);
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("timeToLive must be positive: "+timeToLive);
+        }
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = unit.toMillis(timeToLive);
+    }
+
+    /** true if key has been recorded as missing and its time to live is not over. */
+    public boolean contains(K key) {
+        Long expiration = expirations.get(key);
+        if (expiration == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() > expiration) {
+            expirations.remove(key, expiration);
+            return false;
+        }
+        return true;
+    }
+
+    /** Records key as missing. */
+    public void add(K key) {
+        if (expirations.size() >= maxSize) {
+            makeRoom();
+        }
+        expirations.put(key, System.currentTimeMillis() + timeToLiveMillis);
+    }
+
+    /** Call it when the key starts to exist (i.e. entity created with that id). */
+    public void remove(K key) {
+        expirations.remove(key);
+    }
+
+    public void clear() {
+        expirations.clear();
+    }
+
+    public int size() {
+        return expirations.size();
+    }
+
+    /** Removes the expired keys, and if it's not enough, a quarter of the keys. */
+    private void makeRoom() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<K, Long>> it = expirations.entrySet().iterator(); it.hasNext();) {
+            if (now > it.next().getValue()) {
+                it.remove();
+            }
+        }
+        int toRemove = expirations.size() - maxSize * 3 / 4;
+        for (Iterator<K> it = expirations.keySet().iterator(); toRemove > 0 && it.hasNext(); toRemove--) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.vaadin.navigator7.uri;
+
+/** Parses the numbers of URI parameters without throwing NumberFormatException.
+ * Accepts the same texts as Integer.parseInt(), Long.parseLong() and Double.parseDouble() for the values that
+ * Integer.toString(), Long.toString() and Double.toString() produce (no leading/trailing spaces, no hexadecimal, no "d"/"f" suffix).
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class NumberParser {
+
+    private NumberParser() {
+    }
+
+    public static ParseResult parseInt(CharSequence text) {
+        return parseInt(text, 0, text.length());
+    }
+
+    public static ParseResult parseInt(CharSequence text, int start, int end) {
+        return parseLong(text, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public static ParseResult parseLong(CharSequence text) {
+        return parseLong(text, 0, text.length());
+    }
+
+    public static ParseResult parseLong(CharSequence text, int start, int end) {
+        return parseLong(text, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /** For byte and short values. */
+    public static ParseResult parseLong(CharSequence text, int start, int end, long min, long max) {
+        if (start >= end) {
+            return ParseResult.INVALID;
+        }
+        boolean negative = false;
+        int i = start;
+        char first = text.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {  // Sign alone.
+                return ParseResult.INVALID;
+            }
+        }
+
+        // Accumulated negatively (as Long.parseLong does), because Long.MIN_VALUE has no positive counterpart.
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                return ParseResult.INVALID;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return ParseResult.INVALID;  // Overflow.
+            }
+            result -= digit;
+        }
+        return ParseResult.ofLong(negative ? result : -result);
+    }
+
+
+    public static ParseResult parseDouble(CharSequence text) {
+        return parseDouble(text, 0, text.length());
+    }
+
+    public static ParseResult parseDouble(CharSequence text, int start, int end) {
+        if (!isDecimal(text, start, end)) {
+            return ParseResult.INVALID;
+        }
+        // The syntax has been checked => Double.parseDouble cannot throw.
+        return ParseResult.ofDouble(Double.parseDouble(text.subSequence(start, end).toString()));
+    }
+
+    /** true for [+-]digits[.digits][(e|E)[+-]digits] (at least one digit before or after the dot), and for NaN and [+-]Infinity. */
+    private static boolean isDecimal(CharSequence text, int start, int end) {
+        int i = start;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        if (regionEquals(text, i, end, "Infinity") || (i == start && regionEquals(text, i, end, "NaN"))) {
+            return true;
+        }
+
+        int digits = 0;
+        for (; i < end && isDigit(text.charAt(i)); i++) {
+            digits++;
+        }
+        if (i < end && text.charAt(i) == '.') {
+            i++;
+            for (; i < end && isDigit(text.charAt(i)); i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < end && isDigit(text.charAt(i)); i++) {
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean regionEquals(CharSequence text, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
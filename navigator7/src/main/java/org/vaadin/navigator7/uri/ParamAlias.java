@@ -0,0 +1,24 @@
+package org.vaadin.navigator7.uri;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Applied to a constant of an enum used as @Param field type.
+ * The enum constant is also found from these names in the URI (in addition to its name()).
+ * Links are always generated with name().
+ * <pre>
+ * public enum Language {
+ *     &#64;ParamAlias({"en", "english"}) EN,
+ *     &#64;ParamAlias({"fr", "francais"}) FR;
+ * }
+ * </pre>
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD})
+public @interface ParamAlias {
+    String[] value();
+}
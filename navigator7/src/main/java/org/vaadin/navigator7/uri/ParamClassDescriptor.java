@@ -0,0 +1,185 @@
+package org.vaadin.navigator7.uri;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** Immutable description of the @Param annotated fields of a class (typically a page).
+ * Scanning the class hierarchy and reading the annotations is done once per class, the first time the class is used
+ * (or when the page is registered in the NavigatorConfig). ParamInjector reads everything from here afterwards.
+ *
+ * Fields are read and written through the classes generated by the navigator7-apt annotation processor when they exist,
+ * else through MethodHandles.
+ *
+ * Schema problems (two fields at the same position, position holes, two fields with the same name) are detected when
+ * the descriptor is built. NavigatorConfig.addPageClass() rejects the pages having such problems, at registration time.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class ParamClassDescriptor {
+
+    private static final ClassValue<ParamClassDescriptor> DESCRIPTORS = new ClassValue<ParamClassDescriptor>() {
+        @Override
+        protected ParamClassDescriptor computeValue(Class<?> type) {
+            return new ParamClassDescriptor(type);
+        }
+    };
+
+    /** Returns the (cached) descriptor of the given class. */
+    public static ParamClassDescriptor forClass(Class<?> annotatedClass) {
+        return DESCRIPTORS.get(annotatedClass);
+    }
+
+
+    private final Class<?> annotatedClass;
+    private final List<ParamField> fields;            // All the @Param fields, subclass fields first (same order as ParamInjector.findAnnotatedFields()).
+    private final List<ParamField> positionalFields;  // Sorted by position. If there is no hole, the index in the list is the position.
+    private final Map<String, ParamField> namedFields; // Key = parameter name. Definition order of the fields.
+    private final String duplicateProblem;  // null if no two fields share the same position or name.
+    private final String holeProblem;       // null if there is no hole in the positions.
+
+    private ParamClassDescriptor(Class<?> annotatedClass) {
+        this.annotatedClass = annotatedClass;
+
+        List<ParamField> fieldList = new ArrayList<ParamField>();
+        SortedMap<Integer, ParamField> posFieldMap = new TreeMap<Integer, ParamField>();
+        Map<String, ParamField> namedFieldMap = new LinkedHashMap<String, ParamField>();
+        String duplicate = null;
+
+        Map<String, ParamFieldAccessor> generatedAccessors = loadGeneratedAccessors(annotatedClass);
+        for (Field field : ParamInjector.findAnnotatedFields(annotatedClass, Param.class)) {
+            ParamField paramField = new ParamField(field, field.getAnnotation(Param.class),
+                    generatedAccessors.get(getFieldKey(field)));  // null if not generated => MethodHandles.
+            fieldList.add(paramField);
+
+            if (paramField.isPositional()) {
+                ParamField existing = posFieldMap.get(paramField.getPosition());
+                if (existing != null) {  // Ooops, there is already a field for that position.
+                    if (duplicate == null) {
+                        duplicate = "In class "+annotatedClass+", two fields annotated with @Param have the same position (@Param(pos=X)) " +
+                                existing + " and " + field + ". " +
+                                "Please change the position of one of them.";
+                    }
+                } else {
+                    posFieldMap.put(paramField.getPosition(), paramField);
+                }
+
+            } else {  // No position found (i.e. not @Param(pos=3)) => Name based.
+                ParamField existing = namedFieldMap.get(paramField.getName());
+                if (existing != null) {  // Ooops, there is already a field for that name.
+                    if (duplicate == null) {
+                        duplicate = "In class "+annotatedClass+", two named fields (non positional) annotated with @Param " +
+                                "have the same name (" + paramField.getName() + "): " +
+                                existing + " and " + field + ". " +
+                                "Did you forget to specify a position @Param(pos=...) on one of them?";
+                    }
+                } else {
+                    namedFieldMap.put(paramField.getName(), paramField);
+                }
+            }
+        }
+
+        // We detect holes in the definition @Param(pos=...).
+        String hole = null;
+        List<ParamField> posFields = new ArrayList<ParamField>();
+        for (ParamField paramField : posFieldMap.values()) { // values() is sorted by position.
+            int pos = paramField.getPosition();
+            if (hole == null && posFields.size() < pos) { // else they are equals.
+                hole = "In class "+annotatedClass+", the field "+paramField+" is annotated @Param(pos="+pos+"), " +
+                        "but no other field is annotated with @Param(pos="+(pos-1)+"). " +
+                        "These kind of position holes are forbidden.";
+            }
+            posFields.add(paramField);
+        }
+
+        this.fields = Collections.unmodifiableList(fieldList);
+        this.positionalFields = Collections.unmodifiableList(posFields);
+        this.namedFields = Collections.unmodifiableMap(namedFieldMap);
+        this.duplicateProblem = duplicate;
+        this.holeProblem = hole;
+    }
+
+
+    /** Key of the field in ParamsInjector.getFieldKeys(). */
+    static String getFieldKey(Field field) {
+        return field.getDeclaringClass().getName() + "#" + field.getName();
+    }
+
+    /** Looks for the classes generated by the navigator7-apt annotation processor for that class.
+     * @return the accessors by field key. Empty if the classes have not been generated. */
+    private static Map<String, ParamFieldAccessor> loadGeneratedAccessors(Class<?> annotatedClass) {
+        Map<String, ParamFieldAccessor> result = new HashMap<String, ParamFieldAccessor>();
+        ParamsInjector injector;
+        FragmentWriter writer;
+        try {
+            ClassLoader classLoader = annotatedClass.getClassLoader();
+            injector = (ParamsInjector)Class.forName(annotatedClass.getName() + ParamsInjector.GENERATED_SUFFIX, true, classLoader).getDeclaredConstructor().newInstance();
+            writer = (FragmentWriter)Class.forName(annotatedClass.getName() + FragmentWriter.GENERATED_SUFFIX, true, classLoader).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return result;  // Normal: the annotation processor did not run on that class.
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Cannot instantiate the generated @Param accessors of "+annotatedClass, e);
+        }
+
+        String[] keys = injector.getFieldKeys();
+        if (!Arrays.equals(keys, writer.getFieldKeys())) {
+            throw new RuntimeException("Generated classes "+injector.getClass()+" and "+writer.getClass()+" are not consistent. Please rebuild your project.");
+        }
+        for (int i = 0; i < keys.length; i++) {
+            result.put(keys[i], ParamFieldAccessor.create(injector, writer, i));
+        }
+        return result;
+    }
+
+
+    public Class<?> getAnnotatedClass() {
+        return annotatedClass;
+    }
+
+    public boolean hasParams() {
+        return !fields.isEmpty();
+    }
+
+    public List<ParamField> getFields() {
+        return fields;
+    }
+
+    public List<ParamField> getPositionalFields() {
+        return positionalFields;
+    }
+
+    public Map<String, ParamField> getNamedFields() {
+        return namedFields;
+    }
+
+    public ParamField getNamedField(String name) {
+        return namedFields.get(name);
+    }
+
+    /** Returns null if the schema is correct. Else the description of the first problem found. */
+    public String getSchemaProblem() {
+        return duplicateProblem != null ? duplicateProblem : holeProblem;
+    }
+
+    /** Throws a RuntimeException if two fields have the same position or name. */
+    public void checkNoDuplicate() {
+        if (duplicateProblem != null) {
+            throw new RuntimeException(duplicateProblem);
+        }
+    }
+
+    /** Throws a RuntimeException if two fields have the same position or name, or if there are position holes. */
+    public void checkSchema() {
+        String problem = getSchemaProblem();
+        if (problem != null) {
+            throw new RuntimeException(problem);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.vaadin.navigator7.uri;
+
+/** Converts the value of a @Param field from the URI String, and back.
+ * Register your application-wide converters with WebApplication.registerParamConverter(), i.e. in the constructor of your WebApplication descendant:
+ * <pre>
+ *     registerParamConverter(Language.class, new ParamConverter&lt;Language&gt;() {
+ *         public Language fromString(String valueStr) {
+ *             return Language.fromCode(valueStr);  // null if invalid code.
+ *         }
+ *         public String toString(Language value) {
+ *             return value.getCode();
+ *         }
+ *     });
+ * </pre>
+ * It replaces the need to override ParamUriAnalyzer.convertSpecialType() for that type.
+ *
+ * Converters are stateless and shared by all the pages and all the threads.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ *
+ * @param <T> the type of the field (the wrapper type for a primitive field).
+ */
+public abstract class ParamConverter<T> {
+
+    /** @param valueStr never null.
+     * @return null if valueStr cannot be converted. Don't throw NumberFormatException (it's expensive when bots send garbage URLs), use NumberParser. */
+    public abstract T fromString(String valueStr);
+
+    /** @param value never null */
+    public String toString(T value) {
+        return value.toString();
+    }
+
+    /** Converts valueStr and assigns the result to the field.
+     * Converters of primitive types override this method to assign the field without boxing.
+     * @return null if success, else the description of the problem (the field has not been changed). */
+    public String injectInto(Object target, ParamFieldAccessor accessor, String valueStr) {
+        T value = fromString(valueStr);
+        if (value == null) {
+            return "Cannot convert value '"+valueStr+"'";
+        }
+        accessor.set(target, value);
+        return null;
+    }
+
+    /** Idem injectInto(Object, ParamFieldAccessor, String), with the value as a range of the URI fragment (ParsedFragment offsets).
+     * Converters parsing numbers override this method to parse the range directly, without allocating a substring. */
+    public String injectInto(Object target, ParamFieldAccessor accessor, CharSequence text, int start, int end) {
+        return injectInto(target, accessor, text.subSequence(start, end).toString());
+    }
+
+    /** Reads the field and converts its value into a String.
+     * @return null if the field value is null. */
+    @SuppressWarnings("unchecked")
+    public String extractFrom(Object target, ParamFieldAccessor accessor) {
+        T value = (T)accessor.get(target);
+        return value == null ? null : toString(value);
+    }
+
+}
@@ -0,0 +1,425 @@
+package org.vaadin.navigator7.uri;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.vaadin.navigator7.WebApplication;
+
+/** The ParamConverters of a WebApplication, by field type.
+ * The converter of a type is resolved once (through a ClassValue), then every field of that type uses it directly:
+ *   1. the converter registered for that type (or for a superclass),
+ *   2. else the built-in converter of the basic types (String, numbers, boolean),
+ *   3. else, for an enum, the constant of that name or @ParamAlias (see EnumLookup),
+ *   4. else a converter calling ParamUriAnalyzer.convertSpecialType() (probably EntityUriAnalyzer.findEntity()).
+ * EntityRef fields are injected by ParamInjector, because the entity type comes from the field declaration (EntityRef<Product>).
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class ParamConverterRegistry {
+
+    private static final Map<Class<?>, ParamConverter<?>> BUILTIN_CONVERTERS;
+    static {
+        Map<Class<?>, ParamConverter<?>> builtins = new HashMap<Class<?>, ParamConverter<?>>();
+        builtins.put(String.class,  new StringConverter());
+        builtins.put(int.class,     new IntConverter(true));
+        builtins.put(Integer.class, new IntConverter(false));
+        builtins.put(long.class,    new LongConverter(true));
+        builtins.put(Long.class,    new LongConverter(false));
+        builtins.put(double.class,  new DoubleConverter(true));
+        builtins.put(Double.class,  new DoubleConverter(false));
+        builtins.put(boolean.class, new BooleanConverter(true));
+        builtins.put(Boolean.class, new BooleanConverter(false));
+        builtins.put(byte.class,    new ByteConverter());
+        builtins.put(Byte.class,    new ByteConverter());
+        builtins.put(short.class,   new ShortConverter());
+        builtins.put(Short.class,   new ShortConverter());
+        builtins.put(float.class,   new FloatConverter());
+        builtins.put(Float.class,   new FloatConverter());
+        BUILTIN_CONVERTERS = Collections.unmodifiableMap(builtins);
+    }
+
+    /** true for String, the primitive types (except char) and their wrappers. */
+    public static boolean isBasicType(Class<?> type) {
+        return BUILTIN_CONVERTERS.containsKey(type);
+    }
+
+
+    private final Map<Class<?>, ParamConverter<?>> registeredConverters = new ConcurrentHashMap<Class<?>, ParamConverter<?>>();
+
+    /** Replaced at each registration, so that the types resolved before are resolved again. */
+    private volatile ClassValue<ParamConverter<?>> resolvedConverters = newResolver();
+
+    private ClassValue<ParamConverter<?>> newResolver() {
+        return new ClassValue<ParamConverter<?>>() {
+            @Override
+            protected ParamConverter<?> computeValue(Class<?> type) {
+                return resolve(type);
+            }
+        };
+    }
+
+    private ParamConverter<?> resolve(Class<?> type) {
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            ParamConverter<?> converter = registeredConverters.get(clazz);
+            if (converter != null) {
+                return converter;
+            }
+        }
+        ParamConverter<?> converter = BUILTIN_CONVERTERS.get(type);
+        if (converter != null) {
+            return converter;
+        }
+        if (type.isEnum()) {
+            return new EnumConverter(type);
+        }
+        if (type == EntityRef.class) {
+            return new EntityRefConverter();
+        }
+        return new SpecialTypeConverter(type);
+    }
+
+
+    /** The converter will be used for the fields of that type and of its subclasses (except if a more specific converter is registered).
+     * Registering a converter for a basic type (as Integer) replaces the built-in converter. */
+    public <T> void register(Class<T> type, ParamConverter<T> converter) {
+        registeredConverters.put(type, converter);
+        resolvedConverters = newResolver();
+    }
+
+    /** Never returns null. */
+    public ParamConverter<?> get(Class<?> type) {
+        return resolvedConverters.get(type);
+    }
+
+
+
+    ////////////////////////////////////////////// Built-in converters //////////////////////////////////////////////
+
+    static class StringConverter extends ParamConverter<String> {
+        @Override
+        public String fromString(String valueStr) {
+            return valueStr;
+        }
+    }
+
+    /** Parses with NumberParser: an invalid number is reported as a problem, without NumberFormatException.
+     * Values are parsed directly from the fragment range, without substring. */
+    static abstract class NumberConverter<T> extends ParamConverter<T> {
+        @Override
+        public T fromString(String valueStr) {
+            ParseResult result = parse(valueStr, 0, valueStr.length());
+            return result.isValid() ? toValue(result) : null;
+        }
+
+        @Override
+        public String injectInto(Object target, ParamFieldAccessor accessor, String valueStr) {
+            return injectInto(target, accessor, valueStr, 0, valueStr.length());
+        }
+
+        @Override
+        public String injectInto(Object target, ParamFieldAccessor accessor, CharSequence text, int start, int end) {
+            ParseResult result = parse(text, start, end);
+            if (!result.isValid()) {
+                return "The value '"+text.subSequence(start, end)+"' in URL is expected to be a number, but it seems not to be a valid number.";
+            }
+            assign(target, accessor, result);
+            return null;
+        }
+
+        protected abstract ParseResult parse(CharSequence text, int start, int end);
+
+        protected abstract T toValue(ParseResult result);
+
+        /** Assigns the wrapper. Overridden by the primitive types having a specialized accessor method. */
+        protected void assign(Object target, ParamFieldAccessor accessor, ParseResult result) {
+            accessor.set(target, toValue(result));
+        }
+    }
+
+    // int, long, double and boolean fields are assigned and read through the primitive specialized accessor methods (no boxing).
+    // byte, short and float fields have no such methods => they are set with the wrapper.
+
+    static class IntConverter extends NumberConverter<Integer> {
+        private final boolean primitive;  // true for the int field converter, false for the Integer field converter.
+
+        IntConverter(boolean primitive) {
+            this.primitive = primitive;
+        }
+
+        @Override
+        protected ParseResult parse(CharSequence text, int start, int end) {
+            return NumberParser.parseInt(text, start, end);
+        }
+
+        @Override
+        protected Integer toValue(ParseResult result) {
+            return Integer.valueOf(result.getInt());
+        }
+
+        @Override
+        protected void assign(Object target, ParamFieldAccessor accessor, ParseResult result) {
+            if (primitive) {
+                accessor.setInt(target, result.getInt());
+            } else {
+                super.assign(target, accessor, result);
+            }
+        }
+
+        @Override
+        public String extractFrom(Object target, ParamFieldAccessor accessor) {
+            return primitive ? Integer.toString(accessor.getInt(target)) : super.extractFrom(target, accessor);
+        }
+    }
+
+    static class LongConverter extends NumberConverter<Long> {
+        private final boolean primitive;
+
+        LongConverter(boolean primitive) {
+            this.primitive = primitive;
+        }
+
+        @Override
+        protected ParseResult parse(CharSequence text, int start, int end) {
+            return NumberParser.parseLong(text, start, end);
+        }
+
+        @Override
+        protected Long toValue(ParseResult result) {
+            return Long.valueOf(result.getLong());
+        }
+
+        @Override
+        protected void assign(Object target, ParamFieldAccessor accessor, ParseResult result) {
+            if (primitive) {
+                accessor.setLong(target, result.getLong());
+            } else {
+                super.assign(target, accessor, result);
+            }
+        }
+
+        @Override
+        public String extractFrom(Object target, ParamFieldAccessor accessor) {
+            return primitive ? Long.toString(accessor.getLong(target)) : super.extractFrom(target, accessor);
+        }
+    }
+
+    static class DoubleConverter extends NumberConverter<Double> {
+        private final boolean primitive;
+
+        DoubleConverter(boolean primitive) {
+            this.primitive = primitive;
+        }
+
+        @Override
+        protected ParseResult parse(CharSequence text, int start, int end) {
+            return NumberParser.parseDouble(text, start, end);
+        }
+
+        @Override
+        protected Double toValue(ParseResult result) {
+            return Double.valueOf(result.getDouble());
+        }
+
+        @Override
+        protected void assign(Object target, ParamFieldAccessor accessor, ParseResult result) {
+            if (primitive) {
+                accessor.setDouble(target, result.getDouble());
+            } else {
+                super.assign(target, accessor, result);
+            }
+        }
+
+        @Override
+        public String extractFrom(Object target, ParamFieldAccessor accessor) {
+            return primitive ? Double.toString(accessor.getDouble(target)) : super.extractFrom(target, accessor);
+        }
+    }
+
+    static class ByteConverter extends NumberConverter<Byte> {
+        @Override
+        protected ParseResult parse(CharSequence text, int start, int end) {
+            return NumberParser.parseLong(text, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+
+        @Override
+        protected Byte toValue(ParseResult result) {
+            return Byte.valueOf((byte)result.getLong());
+        }
+    }
+
+    static class ShortConverter extends NumberConverter<Short> {
+        @Override
+        protected ParseResult parse(CharSequence text, int start, int end) {
+            return NumberParser.parseLong(text, start, end, Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+
+        @Override
+        protected Short toValue(ParseResult result) {
+            return Short.valueOf((short)result.getLong());
+        }
+    }
+
+    static class FloatConverter extends NumberConverter<Float> {
+        @Override
+        protected ParseResult parse(CharSequence text, int start, int end) {
+            return NumberParser.parseDouble(text, start, end);
+        }
+
+        @Override
+        protected Float toValue(ParseResult result) {
+            return Float.valueOf((float)result.getDouble());
+        }
+    }
+
+    /** Any text is a valid boolean: Boolean.parseBoolean() returns false for everything but "true". */
+    static class BooleanConverter extends ParamConverter<Boolean> {
+        private final boolean primitive;
+
+        BooleanConverter(boolean primitive) {
+            this.primitive = primitive;
+        }
+
+        @Override
+        public Boolean fromString(String valueStr) {
+            return Boolean.valueOf(valueStr);
+        }
+
+        @Override
+        public String injectInto(Object target, ParamFieldAccessor accessor, String valueStr) {
+            if (!primitive) {
+                return super.injectInto(target, accessor, valueStr);
+            }
+            accessor.setBoolean(target, Boolean.parseBoolean(valueStr));
+            return null;
+        }
+
+        @Override
+        public String injectInto(Object target, ParamFieldAccessor accessor, CharSequence text, int start, int end) {
+            if (!primitive) {
+                return super.injectInto(target, accessor, text, start, end);
+            }
+            // Same as Boolean.parseBoolean(), without substring (nor toString() of a CharSequence that is no String).
+            boolean value = end - start == 4;
+            for (int i = 0; value && i < 4; i++) {
+                value = Character.toLowerCase(text.charAt(start + i)) == "true".charAt(i);
+            }
+            accessor.setBoolean(target, value);
+            return null;
+        }
+
+        @Override
+        public String extractFrom(Object target, ParamFieldAccessor accessor) {
+            return primitive ? Boolean.toString(accessor.getBoolean(target)) : super.extractFrom(target, accessor);
+        }
+    }
+
+    /** For all the types without registered or built-in converter (probably entities). */
+    static class SpecialTypeConverter extends ParamConverter<Object> {
+        protected final Class<?> type;
+
+        SpecialTypeConverter(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public Object fromString(String valueStr) {
+            // Is it an application-wide special type (probably an entity)?
+            ParamUriAnalyzer paramUriAnalyzer = WebApplication.getCurrent().getUriAnalyzer();
+            return checkType(paramUriAnalyzer.convertSpecialType(type, valueStr, null));   // Will probably call EntityUriAnalyzer.findEntity().
+        }
+
+        /** Idem fromString, but the ParamUriAnalyzer may convert without substring (i.e. EntityUriAnalyzer with long primary keys). */
+        protected Object fromRange(CharSequence text, int start, int end) {
+            ParamUriAnalyzer paramUriAnalyzer = WebApplication.getCurrent().getUriAnalyzer();
+            return checkType(paramUriAnalyzer.convertSpecialType(type, text, start, end));
+        }
+
+        private Object checkType(Object value) {
+            if (value !=null && !type.isAssignableFrom(value.getClass())) {
+                throw new RuntimeException("Your overriden (ParamUriAnalyzer).convertSpecialType method returned an object of type ("+value.getClass()+") incompatible with the expected type that we have provided as parameter ("+type+")");
+            }
+            return value;
+        }
+
+        @Override
+        public String injectInto(Object target, ParamFieldAccessor accessor, String valueStr) {
+            String problem = super.injectInto(target, accessor, valueStr);
+            return problem == null ? null : problem + " into type " + type;
+        }
+
+        @Override
+        public String injectInto(Object target, ParamFieldAccessor accessor, CharSequence text, int start, int end) {
+            Object value = fromRange(text, start, end);
+            if (value == null) {
+                return "Cannot convert value '"+text.subSequence(start, end)+"' into type " + type;
+            }
+            accessor.set(target, value);
+            return null;
+        }
+
+        @Override
+        public String toString(Object value) {
+            // At this point, the field is no basic type
+            // => it is an entity, or it's something special (as an enum)
+            String result = ParamInjector.convertEntityToString(value);
+            if (result != null) {
+                return result;
+            } else {
+                return value.toString();
+            }
+        }
+    }
+
+
+
+    /** Enum constants are found through the EnumLookup of the enum class.
+     * If the name is unknown, ParamUriAnalyzer.convertSpecialType() still has a chance to convert it (i.e. a code not declared with @ParamAlias). */
+    static class EnumConverter extends SpecialTypeConverter {
+        private final EnumLookup lookup;
+
+        EnumConverter(Class<?> type) {
+            super(type);
+            this.lookup = EnumLookup.forClass(type);
+        }
+
+        @Override
+        public Object fromString(String valueStr) {
+            Object value = lookup.fromString(valueStr);
+            if (value == null) {
+                value = super.fromString(valueStr);
+            }
+            return value;
+        }
+
+        @Override
+        protected Object fromRange(CharSequence text, int start, int end) {
+            return fromString(text.subSequence(start, end).toString());  // The lookup needs a String key.
+        }
+
+        @Override
+        public String toString(Object value) {
+            return lookup.toString((Enum<?>)value);
+        }
+    }
+
+
+
+    /** Only used to write links: EntityRef fields are injected by ParamInjector (the entity class comes from the field generic type).
+     * The value may be an EntityRef or the entity itself. */
+    static class EntityRefConverter extends ParamConverter<Object> {
+        @Override
+        public Object fromString(String valueStr) {
+            return null;  // Never called.
+        }
+
+        @Override
+        public String toString(Object value) {
+            if (value instanceof EntityRef<?>) {
+                return ((EntityRef<?>)value).getKey();  // No DB access.
+            }
+            return ParamInjector.convertEntityToString(value);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.vaadin.navigator7.uri;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Optionally applied to an enum used as @Param field type, to change how its values are found from the URI.
+ * @See ParamAlias to give other names to the constants.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface ParamEnum {
+    /** true if "fr", "Fr" and "FR" should all give the constant FR. The names and aliases must then be unique ignoring case. */
+    boolean ignoreCase() default false;
+}
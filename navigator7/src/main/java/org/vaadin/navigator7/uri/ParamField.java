@@ -0,0 +1,105 @@
+package org.vaadin.navigator7.uri;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/** One @Param annotated field, with the annotation attributes already resolved.
+ * Instances are built once per class by ParamClassDescriptor and are immutable.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class ParamField {
+
+    private final Field field;
+    private final Param paramAnnotation;
+    private final String name;     // Explicit @Param(name=...) or the name of the field.
+    private final int position;    // -1 for a named field.
+    private final boolean required;
+    private final ParamFieldAccessor accessor;
+    private final Class<?> entityRefClass;  // T if the field is an EntityRef<T>, else null.
+
+    /** @param accessor null to access the field through MethodHandles (when there is no generated accessor for it). */
+    ParamField(Field field, Param paramAnnotation, ParamFieldAccessor accessor) {
+        this.field = field;
+        this.paramAnnotation = paramAnnotation;
+        if (accessor == null) {
+            this.field.setAccessible(true);  // Enable access to private fields, once for all.
+            accessor = ParamFieldAccessor.create(field);
+        }
+        this.accessor = accessor;
+
+        if (paramAnnotation.name().equals("")) {  // There is no explicit name in the annotation
+            // Let's take the name of the field.
+            this.name = field.getName();
+        } else {  // There is an explicit name in the annotation @Param(name="thereIsAName")
+            this.name = paramAnnotation.name();
+        }
+        this.position = paramAnnotation.pos();
+        this.required = paramAnnotation.required();
+        this.entityRefClass = field.getType() == EntityRef.class ? findEntityRefClass(field) : null;
+    }
+
+    /** Returns Product for a field declared as EntityRef<Product> */
+    private static Class<?> findEntityRefClass(Field field) {
+        Type genericType = field.getGenericType();
+        if (genericType instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType)genericType).getActualTypeArguments()[0];
+            if (argument instanceof Class<?>) {
+                return (Class<?>)argument;
+            }
+        }
+        throw new RuntimeException("The @Param field "+field+" must declare its entity type, as EntityRef<Product>.");
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Param getParamAnnotation() {
+        return paramAnnotation;
+    }
+
+    /** To read/write the field value without going through reflection. */
+    public ParamFieldAccessor getAccessor() {
+        return accessor;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    /** The entity type if the field is an EntityRef (lazy entity), else null. */
+    public Class<?> getEntityRefClass() {
+        return entityRefClass;
+    }
+
+    /** Name of the parameter in the fragment (only meaningful for named fields) */
+    public String getName() {
+        return name;
+    }
+
+    /** -1 if the field is a named field. */
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean isPositional() {
+        return position > -1;
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    /** For messages to the end-user: "at position 0" or "named 'ssn'" */
+    public String getDescription() {
+        return isPositional() ? "at position " + position
+                              : "named '" + name + "'";
+    }
+
+    @Override
+    public String toString() {
+        return field.toString();
+    }
+}
@@ -0,0 +1,357 @@
+package org.vaadin.navigator7.uri;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/** Reads and writes the value of one @Param field.
+ * Resolved once per field (by ParamField), so that injection and fragment generation don't go through
+ * Field.setAccessible() and reflective Field.get()/set() on every navigation and every link render.
+ *
+ * int, long, double and boolean fields have primitive specialized methods that don't box the value.
+ * Other types go through get()/set() (a primitive byte field, for example, is set with a Byte).
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public abstract class ParamFieldAccessor {
+
+    /** Returns an accessor based on MethodHandles, or based on reflection if the handles cannot be created. */
+    public static ParamFieldAccessor create(Field field) {
+        try {
+            return new MethodHandleAccessor(field);
+        } catch (IllegalAccessException e) {
+            // Security manager or module restriction. Reflection is slower but still works (the field has been made accessible).
+            return new ReflectionAccessor(field);
+        }
+    }
+
+    /** Returns an accessor delegating to the classes generated by the navigator7-apt annotation processor. */
+    public static ParamFieldAccessor create(ParamsInjector injector, FragmentWriter writer, int index) {
+        return new GeneratedAccessor(injector, writer, index);
+    }
+
+    public abstract Object get(Object target);
+
+    public abstract void set(Object target, Object value);
+
+    public int getInt(Object target) {
+        return ((Integer)get(target)).intValue();
+    }
+
+    public void setInt(Object target, int value) {
+        set(target, Integer.valueOf(value));
+    }
+
+    public long getLong(Object target) {
+        return ((Long)get(target)).longValue();
+    }
+
+    public void setLong(Object target, long value) {
+        set(target, Long.valueOf(value));
+    }
+
+    public double getDouble(Object target) {
+        return ((Double)get(target)).doubleValue();
+    }
+
+    public void setDouble(Object target, double value) {
+        set(target, Double.valueOf(value));
+    }
+
+    public boolean getBoolean(Object target) {
+        return ((Boolean)get(target)).booleanValue();
+    }
+
+    public void setBoolean(Object target, boolean value) {
+        set(target, Boolean.valueOf(value));
+    }
+
+
+    static RuntimeException wrap(Field field, Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException)t;
+        }
+        if (t instanceof Error) {
+            throw (Error)t;
+        }
+        return new RuntimeException("Cannot access field '"+field+"'. At this level it's not a simple conversion problem, it's a bug (impossible case?)", t);
+    }
+
+
+
+    /** Handles are adapted once to (Object)Object and (Object,Object)void, plus the exact primitive signature for int, long, double and boolean fields. */
+    static class MethodHandleAccessor extends ParamFieldAccessor {
+        private final Field field;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final MethodHandle primitiveGetter;  // null if the field is no int, long, double or boolean.
+        private final MethodHandle primitiveSetter;
+
+        MethodHandleAccessor(Field field) throws IllegalAccessException {
+            this.field = field;
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle rawGetter = lookup.unreflectGetter(field);  // Works on private fields, because the field has been made accessible.
+            MethodHandle rawSetter = lookup.unreflectSetter(field);
+            this.getter = rawGetter.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = rawSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+            Class<?> type = field.getType();
+            if (type == int.class || type == long.class || type == double.class || type == boolean.class) {
+                this.primitiveGetter = rawGetter.asType(MethodType.methodType(type, Object.class));
+                this.primitiveSetter = rawSetter.asType(MethodType.methodType(void.class, Object.class, type));
+            } else {
+                this.primitiveGetter = null;
+                this.primitiveSetter = null;
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            try {
+                return (Object)getter.invokeExact(target);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public void set(Object target, Object value) {
+            try {
+                setter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public int getInt(Object target) {
+            if (field.getType() != int.class) {
+                return super.getInt(target);
+            }
+            try {
+                return (int)primitiveGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public void setInt(Object target, int value) {
+            if (field.getType() != int.class) {
+                super.setInt(target, value);
+                return;
+            }
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public long getLong(Object target) {
+            if (field.getType() != long.class) {
+                return super.getLong(target);
+            }
+            try {
+                return (long)primitiveGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public void setLong(Object target, long value) {
+            if (field.getType() != long.class) {
+                super.setLong(target, value);
+                return;
+            }
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public double getDouble(Object target) {
+            if (field.getType() != double.class) {
+                return super.getDouble(target);
+            }
+            try {
+                return (double)primitiveGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public void setDouble(Object target, double value) {
+            if (field.getType() != double.class) {
+                super.setDouble(target, value);
+                return;
+            }
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public boolean getBoolean(Object target) {
+            if (field.getType() != boolean.class) {
+                return super.getBoolean(target);
+            }
+            try {
+                return (boolean)primitiveGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+
+        @Override
+        public void setBoolean(Object target, boolean value) {
+            if (field.getType() != boolean.class) {
+                super.setBoolean(target, value);
+                return;
+            }
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw wrap(field, t);
+            }
+        }
+    }
+
+
+
+    /** Fallback when MethodHandles cannot be created. */
+    static class ReflectionAccessor extends ParamFieldAccessor {
+        private final Field field;
+
+        ReflectionAccessor(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public Object get(Object target) {
+            try {
+                return field.get(target);
+            } catch (IllegalAccessException e) {
+                throw wrap(field, e);
+            }
+        }
+
+        @Override
+        public void set(Object target, Object value) {
+            try {
+                field.set(target, value);
+            } catch (IllegalAccessException e) {
+                throw wrap(field, e);
+            }
+        }
+
+        @Override
+        public void setInt(Object target, int value) {
+            try {
+                field.setInt(target, value);
+            } catch (IllegalAccessException e) {
+                throw wrap(field, e);
+            }
+        }
+
+        @Override
+        public void setLong(Object target, long value) {
+            try {
+                field.setLong(target, value);
+            } catch (IllegalAccessException e) {
+                throw wrap(field, e);
+            }
+        }
+
+        @Override
+        public void setDouble(Object target, double value) {
+            try {
+                field.setDouble(target, value);
+            } catch (IllegalAccessException e) {
+                throw wrap(field, e);
+            }
+        }
+
+        @Override
+        public void setBoolean(Object target, boolean value) {
+            try {
+                field.setBoolean(target, value);
+            } catch (IllegalAccessException e) {
+                throw wrap(field, e);
+            }
+        }
+    }
+
+
+
+    /** Plain Java field access, through the generated [PageClass]_ParamsInjector and [PageClass]_FragmentWriter. */
+    static class GeneratedAccessor extends ParamFieldAccessor {
+        private final ParamsInjector injector;
+        private final FragmentWriter writer;
+        private final int index;
+
+        GeneratedAccessor(ParamsInjector injector, FragmentWriter writer, int index) {
+            this.injector = injector;
+            this.writer = writer;
+            this.index = index;
+        }
+
+        @Override
+        public Object get(Object target) {
+            return writer.get(target, index);
+        }
+
+        @Override
+        public void set(Object target, Object value) {
+            injector.set(target, index, value);
+        }
+
+        @Override
+        public int getInt(Object target) {
+            return writer.getInt(target, index);
+        }
+
+        @Override
+        public void setInt(Object target, int value) {
+            injector.setInt(target, index, value);
+        }
+
+        @Override
+        public long getLong(Object target) {
+            return writer.getLong(target, index);
+        }
+
+        @Override
+        public void setLong(Object target, long value) {
+            injector.setLong(target, index, value);
+        }
+
+        @Override
+        public double getDouble(Object target) {
+            return writer.getDouble(target, index);
+        }
+
+        @Override
+        public void setDouble(Object target, double value) {
+            injector.setDouble(target, index, value);
+        }
+
+        @Override
+        public boolean getBoolean(Object target) {
+            return writer.getBoolean(target, index);
+        }
+
+        @Override
+        public void setBoolean(Object target, boolean value) {
+            injector.setBoolean(target, index, value);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.vaadin.navigator7.uri;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import org.vaadin.navigator7.NavigableApplication;
 import org.vaadin.navigator7.PageResource;
 import org.vaadin.navigator7.WebApplication;
 
@@ -14,17 +15,24 @@ public class ParamPageResource extends PageResource {
     protected Object[] posParams;
     protected SortedMap<String, Object> namedParams = new TreeMap<String,Object>();
     
+    /** posParams is copied: modifying the array afterwards changes neither the link nor the values injected by Navigator.navigateTo(). */
     public ParamPageResource(Class<? extends Component> pageClass, Object ... posParams) {
         super(pageClass);
-        this.posParams = posParams;
+        this.posParams = posParams == null ? null : posParams.clone();
     }
     
     /** getURL() is called when the Link is being rendered (=> all the params should be there, and we can throw exceptions if something is not consistent with the @Param annotations)
      * Contrary to its ancestor, not all the params are ready in the constructor, because of the addParam() method. */
     @Override
     public String getURL(){
+        String params = getParams();
+        NavigableApplication navigableApplication = NavigableApplication.getCurrent();
+        EntityHandoff entityHandoff = navigableApplication == null ? null : navigableApplication.getEntityHandoff();
+        if (entityHandoff != null) {  // The target page will get our entities without DB access, if the user follows the link.
+            entityHandoff.linkRendered(pageClass, params, posParams, namedParams);
+        }
         return WebApplication.getCurrent().getUriAnalyzer().
-            buildFragmentFromPageAndParameters(pageClass, getParams(), true);
+            buildFragmentFromPageAndParameters(pageClass, params, true);
     }
     
     @Override
@@ -32,6 +40,17 @@ public class ParamPageResource extends PageResource {
         return ParamInjector.generateFragment(pageClass, posParams, namedParams);   
     }
 
+    /** The values given to the constructor, typed (not converted into Strings). Navigator.navigateTo() injects them directly into the page.
+     * Returns a copy. */
+    public Object[] getPosParams() {
+        return posParams == null ? null : posParams.clone();
+    }
+
+    /** The values given to addParam(), typed. */
+    public SortedMap<String, Object> getNamedParams() {
+        return namedParams;
+    }
+
     public synchronized  ParamPageResource addParam(String name, Object value) {
         if (namedParams.get(name) != null) {
             throw new RuntimeException("Trying to add named param that has already been added (same name = '"+name+"')");
@@ -41,10 +41,24 @@ public class ParamUriAnalyzer extends UriAnalyzer {
     protected String paramsSeparator = "/";   // e.g.: param1=value/param2=222/param3=ABC   Could be "&" also (change the value in the constructor of your descendant).
     protected String valueSeparator = "=";    // e.g.: id=123  (key is id, value is 123)
 
+    /** Built the first time a link to the page is generated (after the separators have been set by the constructor). */
+    private final ClassValue<FragmentTemplate> fragmentTemplates = new ClassValue<FragmentTemplate>() {
+        @Override
+        protected FragmentTemplate computeValue(Class<?> type) {
+            return new FragmentTemplate(ParamClassDescriptor.forClass(type), paramsSeparator, valueSeparator);
+        }
+    };
+
     
+    /** Tokenizes the fragment once. Read the values from the result instead of calling getString(String,...) for each parameter.
+     * @param fragment may be null (no parameter). */
+    public ParsedFragment parseFragment(String fragment) {
+        return new ParsedFragment(fragment, paramsSeparator, valueSeparator);
+    }
+
     /** Return the amount of params */
     public int countParams(String fragment) {
-        return fragment.split(paramsSeparator).length;
+        return parseFragment(fragment).countParams();
     }
     
     /**  Returns the value of the parameter of the given key. Returns null if parameter not found.
@@ -54,14 +68,12 @@ public class ParamUriAnalyzer extends UriAnalyzer {
      *    if key is hello, it returns null
      */
     public String getString(String fragment, String key) {
-        String[] pairs = fragment.split(paramsSeparator);
-        for (String pair : pairs) {
-            String[] keyValue = pair.split(valueSeparator);
-            if (keyValue.length == 2 && keyValue[0].equals(key)) {
-                return keyValue[1];
-            }
-        }
-        return null;
+        return getString(parseFragment(fragment), key);
+    }
+
+    /** Idem getString(String, String), on an already parsed fragment. */
+    public String getString(ParsedFragment parsedFragment, String key) {
+        return parsedFragment.getString(key);
     }
 
     /** Idem getString, and shows a message to the end-user if parameter is missing */
@@ -83,12 +95,12 @@ public class ParamUriAnalyzer extends UriAnalyzer {
      */
     public String getString(String fragment, int position) {
         if (fragment == null) {return null;}  // Not found...
-        String[] pairs = fragment.split(paramsSeparator);
-        if (pairs.length > position) {  // Ok, found.
-            return pairs[position];
-        } else { // Not so many parameters
-            return null;
-        }
+        return getString(parseFragment(fragment), position);
+    }
+
+    /** Idem getString(String, int), on an already parsed fragment. */
+    public String getString(ParsedFragment parsedFragment, int position) {
+        return parsedFragment.getString(position);
     }
 
     /** Idem getString, and shows a message to the end-user if parameter is missing */
@@ -111,19 +123,22 @@ public class ParamUriAnalyzer extends UriAnalyzer {
      *    if paramName is brol, it returns null (because it's not a number) and displays an error message to the user.
      * if fragment is null, returns null */
     public Long getLong(String fragment, String paramName) {
-        String value = getString(fragment, paramName);
-        if (value == null) {  // Not found
+        return getLong(parseFragment(fragment), paramName);
+    }
+
+    /** Idem getLong(String, String), on an already parsed fragment. The number is parsed without substring. */
+    public Long getLong(ParsedFragment parsedFragment, String paramName) {
+        int index = parsedFragment.getNamedIndex(paramName);
+        if (index < 0) {  // Not found
             return null;
         }
-        try {
-            Long result;
-            result = Long.parseLong(value);
-            return result;
-        } catch(Exception e) {
+        ParseResult result = NumberParser.parseLong(parsedFragment.getFragment(), parsedFragment.getValueStart(index), parsedFragment.getValueEnd(index));
+        if (!result.isValid()) {
             // parameter found, but it's not a number.
-            reportProblemWithFragment("Invalid parameter '"+paramName+"' in URL which is expected to be a number.", fragment);
+            reportProblemWithFragment("Invalid parameter '"+paramName+"' in URL which is expected to be a number.", parsedFragment.getFragment());
             return null;
         }
+        return result.getLong();
     }
 
     /** Idem getLong, and shows a message to the end-user if parameter is missing */
@@ -146,19 +161,22 @@ public class ParamUriAnalyzer extends UriAnalyzer {
      *    if paramName is brol, it returns null (because it's not a number) and displays an error message to the user.
      * if fragment is null, returns null */
     public Long getLong(String fragment, int position) {
-        String value = getString(fragment, position);
-        if (value == null) {  // Not found
+        return getLong(parseFragment(fragment), position);
+    }
+
+    /** Idem getLong(String, int), on an already parsed fragment. The number is parsed without substring. */
+    public Long getLong(ParsedFragment parsedFragment, int position) {
+        int index = parsedFragment.getPositionIndex(position);
+        if (index < 0) {  // Not found
             return null;
         }
-        try {
-            Long result;
-            result = Long.parseLong(value);
-            return result;
-        } catch(Exception e) {
+        ParseResult result = NumberParser.parseLong(parsedFragment.getFragment(), parsedFragment.getValueStart(index), parsedFragment.getValueEnd(index));
+        if (!result.isValid()) {
             // parameter found, but it's not a number.
-            reportProblemWithFragment("Invalid parameter '"+value+"' at position '"+position+"' in URL which is expected to be a number.", fragment);
+            reportProblemWithFragment("Invalid parameter '"+parsedFragment.getValue(index)+"' at position '"+position+"' in URL which is expected to be a number.", parsedFragment.getFragment());
             return null;
         }
+        return result.getLong();
     }
 
     /** Idem getLong, and shows a message to the end-user if parameter is missing */
@@ -198,6 +216,12 @@ public class ParamUriAnalyzer extends UriAnalyzer {
              + (paramName3 != null ? paramsSeparator + paramName3 + valueSeparator + paramValue3 : "");
     }   
     
+    /** Used by ParamInjector.generateFragment() to build the params of links to that page (class having @Param fields).
+     * Note that the template uses paramsSeparator and valueSeparator directly (it does not call addFragment()). */
+    public FragmentTemplate getFragmentTemplate(Class<?> annotatedClass) {
+        return fragmentTemplates.get(annotatedClass);
+    }
+
     public String getFragment(Class<? extends Component> pageClass, Object ... posParams) {
         return ParamInjector.generateFragment(pageClass, posParams, null);   
     }
@@ -270,8 +294,8 @@ public class ParamUriAnalyzer extends UriAnalyzer {
         currentWindow.showNotification(problemDescription + "<br/>", fragment, Window.Notification.TYPE_HUMANIZED_MESSAGE);
     }
 
-    /** Perform last chance convertion
-     * Override me for application-wide convertion, as for example, a Lanugage enum (FR, EN,...) to be converted from String "FR" to the language enum value Language.FR
+    /** Perform last chance convertion, for the types having no ParamConverter registered.
+     * Prefer WebApplication.registerParamConverter() for application-wide convertion, as for example, a Lanugage enum (FR, EN,...) to be converted from String "FR" to the language enum value Language.FR
      * If you need it for only one page, make your page implement TypeConvertor.
      * The other direction of the convertion (object to string) is done with Object.toString().
      * 
@@ -280,5 +304,11 @@ public class ParamUriAnalyzer extends UriAnalyzer {
         reportProblemWithFragment("Invalid parameter value "+valueStr, fragment);
         return null;  // Convertion failed, by default. Your method would probably try to actually convert first.
     }
+
+    /** Called by ParamInjector with the value as a range [start, end[ of the fragment (text), to avoid a substring when possible.
+     * By default, calls convertSpecialType(Class, String, String) with the substring. */
+    public Object convertSpecialType(Class<?> type, CharSequence text, int start, int end) {
+        return convertSpecialType(type, text.subSequence(start, end).toString(), text.toString());
+    }
     
 }
@@ -0,0 +1,28 @@
+package org.vaadin.navigator7.uri;
+
+/** Writes the @Param fields of one page class without reflection.
+ * Implementations are generated at compile time by the navigator7-apt annotation processor, as [PageClass]_ParamsInjector
+ * in the package of the page. When such a class is present, ParamClassDescriptor uses it instead of MethodHandles.
+ *
+ * Fields are identified by their index in getFieldKeys().
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public interface ParamsInjector {
+
+    /** Suffix appended to the page class name to get the generated class name. */
+    public static final String GENERATED_SUFFIX = "_ParamsInjector";
+
+    /** "declaringClassName#fieldName" for each @Param field. The position in the array is the index given to the other methods. */
+    public String[] getFieldKeys();
+
+    public void set(Object page, int index, Object value);
+
+    public void setInt(Object page, int index, int value);
+
+    public void setLong(Object page, int index, long value);
+
+    public void setDouble(Object page, int index, double value);
+
+    public void setBoolean(Object page, int index, boolean value);
+}
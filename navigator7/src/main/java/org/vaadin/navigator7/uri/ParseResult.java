@@ -0,0 +1,65 @@
+package org.vaadin.navigator7.uri;
+
+/** Result of a NumberParser method: a number, or the fact that the text is no valid number.
+ * Used instead of catching NumberFormatException, so that rejecting a garbage URL parameter does not fill a stack trace.
+ *
+ * The rejection is free of allocation (INVALID is shared), as are the small integers (page numbers, small ids, flags) from -128 to 1023,
+ * which are cached as Long.valueOf() does. Any other valid value still allocates one (small, short lived) ParseResult.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class ParseResult {
+
+    /** Shared by all the failed parsings (no allocation when rejecting a value). */
+    public static final ParseResult INVALID = new ParseResult(false, 0L, 0d);
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final ParseResult[] CACHE = new ParseResult[CACHE_HIGH - CACHE_LOW + 1];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ParseResult(true, i + CACHE_LOW, i + CACHE_LOW);
+        }
+    }
+
+    private final boolean valid;
+    private final long longValue;
+    private final double doubleValue;
+
+    private ParseResult(boolean valid, long longValue, double doubleValue) {
+        this.valid = valid;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+    }
+
+    static ParseResult ofLong(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[(int)value - CACHE_LOW];
+        }
+        return new ParseResult(true, value, value);
+    }
+
+    static ParseResult ofDouble(double value) {
+        return new ParseResult(true, (long)value, value);
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /** Only meaningful if isValid() and the result comes from NumberParser.parseInt(). */
+    public int getInt() {
+        return (int)longValue;
+    }
+
+    /** Only meaningful if isValid() and the result comes from NumberParser.parseInt() or parseLong(). */
+    public long getLong() {
+        return longValue;
+    }
+
+    /** Only meaningful if isValid(). */
+    public double getDouble() {
+        return doubleValue;
+    }
+
+}
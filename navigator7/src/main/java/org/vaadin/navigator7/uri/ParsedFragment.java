@@ -0,0 +1,170 @@
+package org.vaadin.navigator7.uri;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The parameters part of a URI fragment, tokenized once.
+ * If the fragment is "246/AAA/userId=0231", getString(1) returns "AAA" and getString("userId") returns "0231".
+ *
+ * Built by ParamUriAnalyzer.parseFragment(), once per navigation (PageInvocation.getParsedParams()),
+ * then every @Param field reads its value from here instead of splitting the fragment again.
+ * Results are the same as splitting the fragment with String.split(), but separators are taken literally (not as regex).
+ *
+ * Values are kept as offsets in the original fragment (no substring). Numbers are parsed directly from the fragment:
+ * <pre>
+ *     int index = parsedFragment.getNamedIndex("userId");
+ *     if (index >= 0) {
+ *         ParseResult userId = NumberParser.parseLong(parsedFragment.getFragment(), parsedFragment.getValueStart(index), parsedFragment.getValueEnd(index));
+ *     }
+ * </pre>
+ * Only getString() and getValue() allocate a String.
+ *
+ * Immutable.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class ParsedFragment {
+
+    private final String fragment;
+    private final int count;      // Amount of params (as "246", "AAA" and "userId=0231").
+    private final int capacity;   // Size of the first half of the offset arrays (>= count).
+    private final int[] starts;   // [0, capacity[ : whole param ("userId=0231") at that position.  [capacity, 2*capacity[ : value ("0231") of the named param at (index - capacity).
+    private final int[] ends;     // Exclusive.
+    private final Map<String, Integer> namedIndexes;  // Key = name. Value = index in starts/ends. Only for the params with exactly one valueSeparator ("userId=0231"). First occurrence wins.
+
+    public ParsedFragment(String fragment, String paramsSeparator, String valueSeparator) {
+        this.fragment = fragment;
+        if (fragment == null) {
+            this.count = 0;
+            this.capacity = 0;
+            this.starts = this.ends = new int[0];
+            this.namedIndexes = Collections.emptyMap();
+            return;
+        }
+
+        //// Positional split
+        int max = countOccurrences(fragment, 0, fragment.length(), paramsSeparator) + 1;
+        this.capacity = max;
+        this.starts = new int[2 * max];
+        this.ends = new int[2 * max];
+        int size = 0;
+        int start = 0;
+        int index = fragment.indexOf(paramsSeparator);
+        while (index >= 0) {
+            starts[size] = start;
+            ends[size] = index;
+            size++;
+            start = index + paramsSeparator.length();
+            index = fragment.indexOf(paramsSeparator, start);
+        }
+        starts[size] = start;
+        ends[size] = fragment.length();
+        size++;
+        if (size > 1) {  // As String.split(), we remove trailing empty strings (but "" alone gives one empty param).
+            while (size > 0 && starts[size - 1] == ends[size - 1]) {
+                size--;
+            }
+        }
+        this.count = size;
+
+        //// Named values
+        Map<String, Integer> names = new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            int separatorIndex = indexOf(fragment, valueSeparator, starts[i], ends[i]);
+            if (separatorIndex < 0) {
+                continue;  // Not a pair.
+            }
+            // Same as param.split(valueSeparator).length == 2 : key, value, then only empty strings.
+            int valueStart = separatorIndex + valueSeparator.length();
+            int valueEnd = indexOf(fragment, valueSeparator, valueStart, ends[i]);
+            if (valueEnd < 0) {
+                valueEnd = ends[i];
+            } else if (!onlySeparators(fragment, valueEnd, ends[i], valueSeparator)) {
+                continue;  // More than one value separator, as "a=b=c".
+            }
+            if (valueStart == valueEnd) {
+                continue;  // "a=" gives only the key.
+            }
+            String name = fragment.substring(starts[i], separatorIndex);
+            if (!names.containsKey(name)) {
+                names.put(name, Integer.valueOf(capacity + i));
+                starts[capacity + i] = valueStart;
+                ends[capacity + i] = valueEnd;
+            }
+        }
+        this.namedIndexes = names;
+    }
+
+    private static int indexOf(String text, String separator, int start, int end) {
+        int index = text.indexOf(separator, start);
+        return index >= 0 && index + separator.length() <= end ? index : -1;
+    }
+
+    private static int countOccurrences(String text, int start, int end, String separator) {
+        int result = 0;
+        for (int index = indexOf(text, separator, start, end); index >= 0; index = indexOf(text, separator, index + separator.length(), end)) {
+            result++;
+        }
+        return result;
+    }
+
+    /** true if [start, end[ is made of separators only (as "==" ) */
+    private static boolean onlySeparators(String text, int start, int end, String separator) {
+        return (end - start) % separator.length() == 0
+            && countOccurrences(text, start, end, separator) * separator.length() == end - start;
+    }
+
+
+    /** The original String. May be null. */
+    public String getFragment() {
+        return fragment;
+    }
+
+    public int countParams() {
+        return count;
+    }
+
+    /** Returns the index to give to getValueStart()/getValueEnd(), or -1 if there is no parameter at that position.
+     * As with String.split(), for a named param at that position, the value is the whole "name=value". */
+    public int getPositionIndex(int position) {
+        return position < count ? position : -1;
+    }
+
+    /** Returns the index to give to getValueStart()/getValueEnd(), or -1 if there is no parameter of that name. */
+    public int getNamedIndex(String name) {
+        Integer index = namedIndexes.get(name);
+        return index == null ? -1 : index.intValue();
+    }
+
+    /** Offset of the value in getFragment(). For a named parameter, it's the offset of the value (after the value separator). */
+    public int getValueStart(int index) {
+        return starts[index];
+    }
+
+    /** Exclusive end offset of the value in getFragment(). */
+    public int getValueEnd(int index) {
+        return ends[index];
+    }
+
+    /** Allocates the String of the value at that index. */
+    public String getValue(int index) {
+        return fragment.substring(getValueStart(index), getValueEnd(index));
+    }
+
+    /** Returns the value of the parameter at the given position (starting at 0). Returns null if not found. */
+    public String getString(int position) {
+        return position < count ? getValue(position) : null;
+    }
+
+    /** Returns the value of the parameter of the given name. Returns null if not found. */
+    public String getString(String name) {
+        int index = getNamedIndex(name);
+        return index < 0 ? null : getValue(index);
+    }
+
+    @Override
+    public String toString() {
+        return fragment;
+    }
+}
@@ -0,0 +1,70 @@
+package org.vaadin.navigator7.uri;
+
+import org.vaadin.navigator7.PageRoute;
+
+import com.vaadin.ui.Component;
+
+/** Result of UriAnalyzer.matchFragment(): the page found from the page name of a URI fragment, and where the params start.
+ * Page name and params are kept as offsets in the fragment: Strings are only created if getPageName() or getParams() is called.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public final class RouteMatch {
+
+    private final String fragment;
+    private final PageRoute route;    // null if no page name, or unknown page name.
+    private final int nameStart;      // Page name = [nameStart, nameEnd[ of fragment, without the "!" of crawlable pages.
+    private final int nameEnd;
+    private final int paramsStart;    // -1 if there is no params part.
+    private String params;            // Built lazily (or given by the constructor).
+
+    /** @param paramsStart -1 if there is no "/" after the page name. */
+    public RouteMatch(String fragment, PageRoute route, int nameStart, int nameEnd, int paramsStart) {
+        this.fragment = fragment;
+        this.route = route;
+        this.nameStart = nameStart;
+        this.nameEnd = nameEnd;
+        this.paramsStart = paramsStart;
+    }
+
+    /** From an already split fragment (see UriAnalyzer.extractPageNameAndParamsFromFragment()).
+     * @param pageName may be null. */
+    public RouteMatch(String pageName, String params, PageRoute route) {
+        this(pageName == null ? "" : pageName, route, 0, pageName == null ? 0 : pageName.length(), -1);
+        this.params = params;
+    }
+
+
+    /** The page of the page name. null if there is no page name or if no page has that name. */
+    public PageRoute getRoute() {
+        return route;
+    }
+
+    /** null if getRoute() is null. */
+    public Class<? extends Component> getPageClass() {
+        return route == null ? null : route.getPageClass();
+    }
+
+    /** false if the fragment has no page name (blank), meaning the home page. */
+    public boolean hasPageName() {
+        for (int i = nameStart; i < nameEnd; i++) {
+            if (fragment.charAt(i) > ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The page name as written in the fragment (for messages). null if there is no page name. */
+    public String getPageName() {
+        return hasPageName() ? fragment.substring(nameStart, nameEnd) : null;
+    }
+
+    /** The part of the fragment after the "/" that follows the page name. null if there is none. */
+    public String getParams() {
+        if (params == null && paramsStart >= 0) {
+            params = fragment.substring(paramsStart);
+        }
+        return params;
+    }
+}
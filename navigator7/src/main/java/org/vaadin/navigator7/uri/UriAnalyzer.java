@@ -1,6 +1,8 @@
 package org.vaadin.navigator7.uri;
 
 import org.vaadin.navigator7.NavigatorConfig;
+import org.vaadin.navigator7.PageRoute;
+import org.vaadin.navigator7.RouteTable;
 import org.vaadin.navigator7.WebApplication;
 
 import com.vaadin.ui.Component;
@@ -26,23 +28,68 @@ public class UriAnalyzer {
      * Returns an array of 2 strings. The 1st is the screen name ("user"), the second is the rest of the string ("userid=555")
      * If there are no params, the second element of the array is an empty string.
      *
+     * Hierarchical page names ("admin/users/edit") are not known here: use matchFragment().
      */
     public String[] extractPageNameAndParamsFromFragment(String fragment) {
         if (fragment == null || fragment.trim().equals("")) {
             return new String[] {null, null};
         }
 
-        String[] fragmentParts = fragment.split("/", 2);  // Max in 2 parts. We split "user/userid=555/big=true" into "user" and "userid=555/big=true". Separating parameters from each other is not our problem here.
-        if (fragmentParts.length == 1) {
-            fragmentParts = new String[] { fragmentParts[0], null };
-        }
+        // Max in 2 parts. We split "user/userid=555/big=true" into "user" and "userid=555/big=true". Separating parameters from each other is not our problem here.
+        int slash = fragment.indexOf('/');
+        int nameEnd = slash < 0 ? fragment.length() : slash;
         
         // We remove the eventual "!" from page name (added for crawlable pages).
-        if (fragmentParts[0].startsWith("!")) {
-            fragmentParts[0] = fragmentParts[0].substring(1);
-        }
+        int nameStart = fragment.startsWith("!") && nameEnd > 0 ? 1 : 0;
         
-        return fragmentParts;
+        return new String[] { fragment.substring(nameStart, nameEnd), 
+                              slash < 0 ? null : fragment.substring(slash + 1) };
+    }
+
+    /** Idem extractPageNameAndParamsFromFragment(), but the page is directly found from the characters of the fragment (see RouteTable.findRoute()):
+     * no intermediate String for the page name. The params String is only created if RouteMatch.getParams() is called.
+     * Used by the Navigator when the URI changes.
+     * 
+     * Hierarchical page names are matched segment by segment (see RouteTable.matchRoute()): for "admin/users/edit/42", the page is "admin/users/edit"
+     * (if registered) and the params are "42". If no page name matches, the page name is the first segment (for the error message).
+     * 
+     * If your descendant overrides extractPageNameAndParamsFromFragment(), that method is called instead (and the page name is looked up as a String). */
+    public RouteMatch matchFragment(String fragment) {
+        return matchFragment(fragment, WebApplication.getCurrent().getNavigatorConfig().getRouteTable());
+    }
+
+    /** Idem, with the pages of the given table (when WebApplication.getCurrent() is not available). */
+    public RouteMatch matchFragment(String fragment, RouteTable routeTable) {
+        if (extractOverridden) {
+            String[] names = extractPageNameAndParamsFromFragment(fragment);
+            PageRoute route = names[0] == null ? null : routeTable.findRoute(names[0], 0, names[0].length());
+            return new RouteMatch(names[0], names[1], route);
+        }
+
+        if (fragment == null) {
+            return new RouteMatch("", null, 0, 0, -1);
+        }
+        int nameStart = fragment.startsWith("!") ? 1 : 0;  // We skip the eventual "!" (added for crawlable pages).
+        PageRoute route = routeTable.matchRoute(fragment, nameStart, fragment.length());
+        int nameEnd;
+        if (route != null) {
+            nameEnd = nameStart + route.getPageName().length();  // Followed by "/" or by the end of the fragment.
+        } else {
+            int slash = fragment.indexOf('/', nameStart);
+            nameEnd = slash < 0 ? fragment.length() : slash;
+        }
+        return new RouteMatch(fragment, route, nameStart, nameEnd, nameEnd < fragment.length() ? nameEnd + 1 : -1);
+    }
+
+    // true if a descendant overrides extractPageNameAndParamsFromFragment(): matchFragment() must call it. Computed once (this class is stateless and shared).
+    private final boolean extractOverridden = isOverridden(getClass(), "extractPageNameAndParamsFromFragment", String.class);
+
+    private static boolean isOverridden(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(methodName, parameterTypes).getDeclaringClass() != UriAnalyzer.class;
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Bug: method "+methodName+" not found in "+clazz, e);
+        }
     }
     
     
@@ -51,35 +98,14 @@ public class UriAnalyzer {
      * @param params may be null if no param.
      * @param withAnchor true means you want a # in front of the result (as "#Auction/1234"  */
     public String buildFragmentFromPageAndParameters(Class<? extends Component> pageClass, String params, boolean withAnchor) {
-        if ("".equals(params)) {
-            params = null;  // One case for both.
-        }
-        
-        WebApplication webApp = WebApplication.getCurrent();
-        
-        String pageName;
-        boolean isCrawlable;
-        Class<? extends Component> homePageClass;
-
-        NavigatorConfig navigatorConfig = webApp.getNavigatorConfig();
-        homePageClass = navigatorConfig.getHomePageClass();
+        NavigatorConfig navigatorConfig = WebApplication.getCurrent().getNavigatorConfig();
 
-        pageName = navigatorConfig.getPageName(pageClass);
-        isCrawlable = navigatorConfig.isPageCrawlable(pageClass);
-        
-        if (isCrawlable) {
-            pageName = "!" + pageName;
+        // The route has precomputed the fragment prefix ("#", "!", page name or not for the home page).
+        PageRoute route = navigatorConfig.getRouteTable().getRoute(pageClass);
+        if (route == null) {
+            navigatorConfig.getPageName(pageClass);  // Throws the exception explaining that the page is not registered.
         }
-
-        String paramsFragment = (params==null ? ""   // Don't show the "/" in case there is no param. 
-                                 : "/"+params);
-        
-        String anchor = withAnchor ? "#" : "";
-        
-        String result = pageClass == homePageClass ?
-                   anchor +           paramsFragment   // For the home page we don't tell the page name. But want # also for the home page because: see http://vaadin.com/forum/-/message_boards/message/69700
-                : (anchor + pageName + paramsFragment); // Normal case
-        return result;
+        return route.buildFragment(params, withAnchor);
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,201 @@
+package org.vaadin.navigator7;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.vaadin.navigator7.uri.RouteMatch;
+import org.vaadin.navigator7.uri.UriAnalyzer;
+
+import com.vaadin.ui.CustomComponent;
+
+/** Page lookups of the RouteTable published by NavigatorConfig.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class RouteTableTest {
+
+    public static class ProductPage extends CustomComponent {
+    }
+
+    @Page(uriName="dash", crawlable=true)
+    public static class DashboardPage extends CustomComponent {
+    }
+
+    public static class AuctionEditorPage extends CustomComponent {
+    }
+
+    @Page(uriName="admin")
+    public static class AdminPage extends CustomComponent {
+    }
+
+    @Page(uriName="admin/users")
+    public static class UsersPage extends CustomComponent {
+    }
+
+    @Page(uriName="Admin/Users/Edit", crawlable=true)
+    public static class UserEditPage extends CustomComponent {
+    }
+
+    @Page(uriName="admin/groups/edit")
+    public static class GroupEditPage extends CustomComponent {
+    }
+
+    private static NavigatorConfig config(Class<?>... pageClasses) {
+        NavigatorConfig navigatorConfig = new NavigatorConfig();
+        navigatorConfig.registerPages(pageClasses);
+        return navigatorConfig;
+    }
+
+    @Test
+    public void namesAreCaseInsensitive() {
+        RouteTable table = config(ProductPage.class, DashboardPage.class, AuctionEditorPage.class).getRouteTable();
+        assertSame(ProductPage.class, table.getPageClass("Product"));
+        assertSame(ProductPage.class, table.getPageClass("PRODUCT"));
+        assertSame(AuctionEditorPage.class, table.getPageClass("auctioneditor"));
+        assertSame(DashboardPage.class, table.getPageClass("Dash"));
+        assertNull(table.getPageClass("Dashboard"));
+        assertNull(table.getPageClass("Produc"));
+        assertNull(table.getPageClass(""));
+        assertEquals("AuctionEditor", table.getPageName(AuctionEditorPage.class));
+    }
+
+    @Test
+    public void findRouteInARangeOfTheFragment() {
+        RouteTable table = config(ProductPage.class, DashboardPage.class).getRouteTable();
+        String fragment = "!dash/product/42";
+        assertSame(DashboardPage.class, table.findRoute(fragment, 1, 5).getPageClass());
+        assertSame(ProductPage.class, table.findRoute(fragment, 6, 13).getPageClass());
+        assertNull(table.findRoute(fragment, 0, 5));  // "!" is not part of the name.
+        assertNull(table.findRoute(new StringBuilder(fragment), 6, 12));
+    }
+
+    @Test
+    public void registrationOrder() {
+        NavigatorConfig navigatorConfig = config(DashboardPage.class, ProductPage.class);
+        assertEquals(Arrays.asList(DashboardPage.class, ProductPage.class), navigatorConfig.getPagesClass());
+        assertSame(DashboardPage.class, navigatorConfig.getHomePageClass());  // First page by default.
+        assertTrue(navigatorConfig.isPageCrawlable(DashboardPage.class));
+        assertFalse(navigatorConfig.isPageCrawlable(ProductPage.class));
+    }
+
+    @Test
+    public void duplicateNameCaseInsensitive() {
+        NavigatorConfig navigatorConfig = config(ProductPage.class);
+        try {
+            navigatorConfig.getRouteTable().withPage(AuctionEditorPage.class, "PRODUCT", false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            navigatorConfig.registerPage(ProductPage.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void tablesAreSnapshots() {
+        NavigatorConfig navigatorConfig = config(ProductPage.class, DashboardPage.class);
+        RouteTable before = navigatorConfig.getRouteTable();
+        navigatorConfig.unregisterPage(ProductPage.class);
+
+        assertNull(navigatorConfig.getPageClass("Product"));
+        assertSame(ProductPage.class, before.getPageClass("Product"));  // Unchanged.
+        assertSame(DashboardPage.class, navigatorConfig.getHomePageClass());  // Next first page.
+        try {
+            navigatorConfig.unregisterPage(ProductPage.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void hierarchicalNames() {
+        RouteTable table = config(AdminPage.class, UsersPage.class, UserEditPage.class, GroupEditPage.class, ProductPage.class).getRouteTable();
+        assertSame(UserEditPage.class, table.getPageClass("admin/users/edit"));
+        assertSame(UsersPage.class, table.getPageClass("ADMIN/USERS"));
+        assertNull(table.getPageClass("admin/groups"));  // Only a prefix of "admin/groups/edit".
+        assertNull(table.getPageClass("admin/users/"));
+        assertNull(table.getPageClass("users/edit"));
+    }
+
+    @Test
+    public void longestPrefixOnWholeSegments() {
+        RouteTable table = config(AdminPage.class, UsersPage.class, UserEditPage.class, GroupEditPage.class, ProductPage.class).getRouteTable();
+        assertMatch(table, "admin/users/edit/42", UserEditPage.class);
+        assertMatch(table, "admin/users/edit", UserEditPage.class);
+        assertMatch(table, "admin/users/editor", UsersPage.class);  // "editor" is no "edit" segment.
+        assertMatch(table, "admin/users/42", UsersPage.class);
+        assertMatch(table, "admin/groups/42", AdminPage.class);  // "admin/groups" is no page: back to "admin".
+        assertMatch(table, "admin/groups/edit/7", GroupEditPage.class);
+        assertMatch(table, "Product/", ProductPage.class);
+        assertMatch(table, "Product", ProductPage.class);
+        assertMatch(table, "Products/1", null);
+        assertMatch(table, "", null);
+        assertMatch(table, "/1", null);
+    }
+
+    @Test
+    public void matchFragment() {
+        RouteTable table = config(AdminPage.class, UsersPage.class, UserEditPage.class, ProductPage.class).getRouteTable();
+        UriAnalyzer uriAnalyzer = new UriAnalyzer();
+
+        RouteMatch match = uriAnalyzer.matchFragment("!admin/users/edit/42/tab=roles", table);
+        assertSame(UserEditPage.class, match.getPageClass());
+        assertEquals("admin/users/edit", match.getPageName());
+        assertEquals("42/tab=roles", match.getParams());
+
+        match = uriAnalyzer.matchFragment("Product/", table);
+        assertSame(ProductPage.class, match.getPageClass());
+        assertEquals("", match.getParams());  // As before: a "/" with nothing after it.
+
+        match = uriAnalyzer.matchFragment("Product", table);
+        assertNull(match.getParams());
+
+        match = uriAnalyzer.matchFragment("nope/1/2", table);
+        assertNull(match.getPageClass());
+        assertEquals("nope", match.getPageName());  // First segment, for the error message.
+        assertEquals("1/2", match.getParams());
+
+        match = uriAnalyzer.matchFragment("/1", table);  // Home page with params.
+        assertFalse(match.hasPageName());
+        assertEquals("1", match.getParams());
+    }
+
+    @Test
+    public void reverseRoutes() {
+        RouteTable table = config(AdminPage.class, UserEditPage.class).getRouteTable();
+        assertEquals("#!Admin/Users/Edit/42", table.getRoute(UserEditPage.class).buildFragment("42", true));
+        assertEquals("!Admin/Users/Edit", table.getRoute(UserEditPage.class).buildFragment("", false));
+        assertEquals("#/42", table.getRoute(AdminPage.class).buildFragment("42", true));  // Home page: no name.
+        assertEquals("", table.getRoute(AdminPage.class).buildFragment(null, false));
+    }
+
+    @Test
+    public void invalidHierarchicalNames() {
+        String[] names = { "", "/admin", "admin/", "admin//users" };
+        for (String name : names) {
+            try {
+                RouteTable.EMPTY.withPage(AdminPage.class, name, false);
+                fail(name);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    private static void assertMatch(RouteTable table, String fragment, Class<?> expectedPageClass) {
+        PageRoute route = table.matchRoute(fragment, 0, fragment.length());
+        assertSame(fragment, expectedPageClass, route == null ? null : route.getPageClass());
+    }
+}
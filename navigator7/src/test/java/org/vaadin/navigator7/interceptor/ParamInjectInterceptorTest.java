@@ -0,0 +1,145 @@
+package org.vaadin.navigator7.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.navigator7.WebApplication;
+import org.vaadin.navigator7.uri.EntityUriAnalyzer;
+import org.vaadin.navigator7.uri.Param;
+import org.vaadin.navigator7.uri.ParamUriAnalyzer;
+import org.vaadin.navigator7.uri.ProductUriAnalyzer;
+import org.vaadin.navigator7.uri.ProductUriAnalyzer.Product;
+
+import com.vaadin.ui.Component;
+import com.vaadin.ui.VerticalLayout;
+
+/** Entities loaded in parallel with the page construction (ParamInjectInterceptor with an ExecutorService).
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class ParamInjectInterceptorTest {
+
+    public static class ProductPage extends VerticalLayout {
+        @Param(pos=0) Product product;
+    }
+
+    /** Accepts the tasks but never runs them (all its threads are busy). */
+    static class StalledExecutor extends AbstractExecutorService {
+        final List<Future<?>> accepted = new ArrayList<Future<?>>();
+
+        @Override
+        public void execute(Runnable command) {
+            accepted.add((Future<?>)command);  // The FutureTask of submit().
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    /** Page instantiated by the test, and no next interceptor. */
+    static class TestPageInvocation extends PageInvocation {
+        final Component page;
+        boolean invoked;
+
+        TestPageInvocation(Component page, String params) {
+            super(null, ProductPage.class, params, false);
+            this.page = page;
+        }
+
+        @Override
+        public Component getPageInstance() {
+            if (page == null) {
+                throw new RuntimeException("Page constructor failed");
+            }
+            return page;
+        }
+
+        @Override
+        public void invoke() {
+            invoked = true;
+        }
+    }
+
+    private ParamUriAnalyzer previousUriAnalyzer;
+    private final ProductUriAnalyzer analyzer = new ProductUriAnalyzer("42");
+    private final StalledExecutor executor = new StalledExecutor();
+
+    @Before
+    public void setUp() {
+        WebApplication.init(WebApplication.class);
+        previousUriAnalyzer = WebApplication.getCurrent().getUriAnalyzer();
+        WebApplication.getCurrent().setUriAnalyzer(analyzer);
+        EntityUriAnalyzer.beginRequest();
+    }
+
+    @After
+    public void tearDown() {
+        EntityUriAnalyzer.endRequest();
+        WebApplication.getCurrent().setUriAnalyzer(previousUriAnalyzer);
+    }
+
+
+    /** The executor does not load the entity in time: the request thread loads it during the injection. */
+    @Test
+    public void timeoutFallsBackToTheInjection() {
+        ProductPage page = new ProductPage();
+        TestPageInvocation pageInvocation = new TestPageInvocation(page, "42");
+        new ParamInjectInterceptor(executor, 10, TimeUnit.MILLISECONDS).intercept(pageInvocation);
+
+        assertEquals(1, executor.accepted.size());
+        assertTrue(executor.accepted.get(0).isCancelled());
+        assertTrue(pageInvocation.invoked);
+        assertSame(analyzer.db.get("42"), page.product);
+        assertEquals(1, analyzer.findEntityCalls.get());
+    }
+
+    /** The page constructor failed: the loading tasks are cancelled. */
+    @Test
+    public void failedInstantiationCancelsTheLoading() {
+        TestPageInvocation pageInvocation = new TestPageInvocation(null, "42");
+        try {
+            new ParamInjectInterceptor(executor, 10, TimeUnit.SECONDS).intercept(pageInvocation);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Page constructor failed", e.getMessage());
+        }
+        assertEquals(1, executor.accepted.size());
+        assertTrue(executor.accepted.get(0).isCancelled());
+        assertFalse(pageInvocation.invoked);
+        assertEquals(0, analyzer.findEntityCalls.get());
+    }
+}
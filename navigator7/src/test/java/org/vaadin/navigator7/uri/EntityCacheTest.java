@@ -0,0 +1,118 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/** Eviction (CLOCK), time to live and invalidation of the EntityCache.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class EntityCacheTest {
+
+    static class Product {
+    }
+
+    static class SpecialProduct extends Product {
+    }
+
+    private final EntityCache cache = new EntityCache();
+
+    @Test
+    public void onlyConfiguredClasses() {
+        cache.put(Product.class, 1L, "p1");
+        assertNull(cache.get(Product.class, 1L));
+        assertFalse(cache.isConfigured(Product.class));
+
+        cache.configure(Product.class, 10, 0, TimeUnit.SECONDS);
+        cache.put(Product.class, 1L, "p1");
+        assertEquals("p1", cache.get(Product.class, 1L));
+        assertNull(cache.get(SpecialProduct.class, 1L));  // Exact class only.
+    }
+
+    @Test
+    public void sizeIsBounded() {
+        cache.configure(Product.class, 100, 0, TimeUnit.SECONDS);
+        for (long pk = 0; pk < 1000; pk++) {
+            cache.put(Product.class, pk, "p" + pk);
+        }
+        assertEquals(100, cache.size(Product.class));
+        assertEquals(900, cache.getEvictionCount(Product.class));
+    }
+
+    @Test
+    public void recentlyReadEntriesGetASecondChance() {
+        cache.configure(Product.class, 4, 0, TimeUnit.SECONDS);
+        for (long pk = 1; pk <= 4; pk++) {
+            cache.put(Product.class, pk, "p" + pk);
+        }
+        cache.get(Product.class, 1L);
+        cache.get(Product.class, 2L);
+
+        cache.put(Product.class, 5L, "p5");
+        assertEquals(4, cache.size(Product.class));
+        assertEquals(1, cache.getEvictionCount(Product.class));
+        assertEquals("p1", cache.get(Product.class, 1L));
+        assertEquals("p2", cache.get(Product.class, 2L));
+    }
+
+    @Test
+    public void expiredEntriesAreMisses() throws InterruptedException {
+        cache.configure(Product.class, 10, 1, TimeUnit.MILLISECONDS);
+        cache.put(Product.class, 1L, "p1");
+        Thread.sleep(10);
+        assertNull(cache.get(Product.class, 1L));
+        assertEquals(0, cache.size(Product.class));
+        assertEquals(1, cache.getMissCount(Product.class));
+    }
+
+    @Test
+    public void hitRate() {
+        cache.configure(Product.class, 10, 0, TimeUnit.SECONDS);
+        assertEquals(0d, cache.getHitRate(), 0d);
+        cache.put(Product.class, 1L, "p1");
+        cache.get(Product.class, 1L);
+        cache.get(Product.class, 2L);
+        assertEquals(0.5d, cache.getHitRate(Product.class), 0d);
+    }
+
+    @Test
+    public void invalidateStringOrLongPk() {
+        cache.configure(Product.class, 10, 0, TimeUnit.SECONDS);
+        cache.put(Product.class, 1L, "p1");
+        cache.put(Product.class, "abc", "pabc");
+        cache.invalidate(Product.class, "1");  // Cached with a long pk (EntityUriAnalyzer.useLongPrimaryKeys()).
+        cache.invalidate(Product.class, "abc");
+        assertNull(cache.get(Product.class, 1L));
+        assertNull(cache.get(Product.class, "abc"));
+        assertEquals(0, cache.size(Product.class));
+    }
+
+    @Test
+    public void invalidateAllIncludesSubClasses() {
+        cache.configure(Product.class, 10, 0, TimeUnit.SECONDS);
+        cache.configure(SpecialProduct.class, 10, 0, TimeUnit.SECONDS);
+        cache.put(Product.class, 1L, "p1");
+        cache.put(SpecialProduct.class, 2L, "s2");
+        cache.invalidateAll(Product.class);
+        assertEquals(0, cache.size(Product.class));
+        assertEquals(0, cache.size(SpecialProduct.class));
+    }
+
+    @Test
+    public void loadStartedBeforeInvalidationIsNotCached() {
+        cache.configure(Product.class, 10, 0, TimeUnit.SECONDS);
+        long generation = cache.getGeneration(Product.class);  // Load starts.
+        cache.invalidate(Product.class, 1L);                    // Another thread updates the entity.
+        cache.put(Product.class, 1L, "stale p1", generation);   // Load ends.
+        assertNull(cache.get(Product.class, 1L));
+
+        cache.put(Product.class, 1L, "p1", cache.getGeneration(Product.class));
+        assertEquals("p1", cache.get(Product.class, 1L));
+        assertEquals(generation + 1, cache.getGeneration(Product.class));
+    }
+}
@@ -0,0 +1,180 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.navigator7.NavigableApplication;
+import org.vaadin.navigator7.NavigatorConfig;
+import org.vaadin.navigator7.WebApplication;
+import org.vaadin.navigator7.uri.ProductUriAnalyzer.Product;
+import org.vaadin.navigator7.window.NavigableAppLevelWindow;
+
+import com.vaadin.ui.VerticalLayout;
+
+/** Entities given to the links rendered recently, handed off to the target page when the user follows the link.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class EntityHandoffTest {
+
+    public static class ProductPage extends VerticalLayout {
+        @Param(pos=0, required=true) Product product;
+        @Param String tab;
+    }
+
+    public static class ProductRefPage extends VerticalLayout {
+        @Param(pos=0, required=true) EntityRef<Product> product;
+    }
+
+    /** Application of the session, made current as NavigableApplication.transactionStart() does. */
+    static class HandoffApplication extends NavigableApplication {
+        HandoffApplication(int maxLinks) {
+            enableEntityHandoff(maxLinks);
+        }
+
+        @Override
+        public NavigableAppLevelWindow createNewNavigableAppLevelWindow() {
+            return null;
+        }
+
+        void makeCurrent() {
+            currentApplication.set(this);
+        }
+
+        static void removeCurrent() {
+            currentApplication.remove();
+        }
+    }
+
+    private ParamUriAnalyzer previousUriAnalyzer;
+    private ProductUriAnalyzer analyzer = new ProductUriAnalyzer("42", "43", "44");
+    private NavigatorConfig navigatorConfig;
+
+    @Before
+    public void setUp() {
+        WebApplication.init(WebApplication.class);
+        previousUriAnalyzer = WebApplication.getCurrent().getUriAnalyzer();
+        WebApplication.getCurrent().setUriAnalyzer(analyzer);
+        navigatorConfig = WebApplication.getCurrent().getNavigatorConfig();
+        navigatorConfig.registerPage(ProductPage.class);
+        navigatorConfig.registerPage(ProductRefPage.class);
+    }
+
+    @After
+    public void tearDown() {
+        HandoffApplication.removeCurrent();
+        EntityUriAnalyzer.endRequest();
+        navigatorConfig.unregisterPage(ProductPage.class);
+        navigatorConfig.unregisterPage(ProductRefPage.class);
+        WebApplication.getCurrent().setUriAnalyzer(previousUriAnalyzer);
+    }
+
+    private Product product(String id) {
+        return analyzer.db.get(id);
+    }
+
+    /** Renders the link, as ParamPageResource.getURL() does. */
+    private static String render(EntityHandoff entityHandoff, Object value) {
+        ParamPageResource resource = new ParamPageResource(ProductPage.class, value);
+        entityHandoff.linkRendered(ProductPage.class, resource.getParams(), resource.getPosParams(), resource.getNamedParams());
+        return resource.getParams();
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void maxLinksMustBePositive() {
+        new EntityHandoff(0);
+    }
+
+    @Test
+    public void renderedLinkHandsOffItsEntity() {
+        EntityHandoff entityHandoff = new EntityHandoff(10);
+        String params = render(entityHandoff, product("42"));
+
+        List<EntityHandoff.HandedOffEntity> entities = entityHandoff.getEntities(ProductPage.class, params);
+        assertEquals(1, entities.size());
+        assertSame(Product.class, entities.get(0).entityClass);
+        assertEquals("42", entities.get(0).pk);
+        assertSame(product("42"), entities.get(0).entity);
+
+        assertTrue(entityHandoff.getEntities(ProductPage.class, "43").isEmpty());
+        assertTrue(entityHandoff.getEntities(VerticalLayout.class, params).isEmpty());
+    }
+
+    @Test
+    public void onlyLoadedEntitiesAreRemembered() {
+        EntityHandoff entityHandoff = new EntityHandoff(10);
+        ParamPageResource refResource = new ParamPageResource(ProductRefPage.class, EntityRef.fromKey(Product.class, "42"));
+        entityHandoff.linkRendered(ProductRefPage.class, refResource.getParams(), refResource.getPosParams(), refResource.getNamedParams());
+        assertTrue(entityHandoff.getEntities(ProductRefPage.class, refResource.getParams()).isEmpty());
+
+        ParamPageResource resource = new ParamPageResource(ProductPage.class, product("43")).addParam("tab", "specs");
+        entityHandoff.linkRendered(ProductPage.class, resource.getParams(), resource.getPosParams(), resource.getNamedParams());
+        assertEquals(1, entityHandoff.getEntities(ProductPage.class, resource.getParams()).size());  // Not the String.
+        assertEquals(0, analyzer.findEntityCalls.get());
+    }
+
+    @Test
+    public void leastRecentlyUsedLinksAreForgotten() {
+        EntityHandoff entityHandoff = new EntityHandoff(2);
+        String params42 = render(entityHandoff, product("42"));
+        String params43 = render(entityHandoff, product("43"));
+        assertEquals(1, entityHandoff.getEntities(ProductPage.class, params42).size());  // 42 is now more recent than 43.
+
+        String params44 = render(entityHandoff, product("44"));
+        assertEquals(1, entityHandoff.getEntities(ProductPage.class, params42).size());
+        assertTrue(entityHandoff.getEntities(ProductPage.class, params43).isEmpty());
+        assertEquals(1, entityHandoff.getEntities(ProductPage.class, params44).size());
+
+        entityHandoff.clear();
+        assertTrue(entityHandoff.getEntities(ProductPage.class, params42).isEmpty());
+    }
+
+    @Test
+    public void followedLinkLoadsNothing() {
+        HandoffApplication application = new HandoffApplication(10);
+        application.makeCurrent();
+        String url = new ParamPageResource(ProductPage.class, product("42")).getURL();
+        assertNotNull(url);
+
+        EntityUriAnalyzer.beginRequest();
+        ProductPage page = new ProductPage();
+        assertNull(ParamInjector.validateAndInject(page, "42", false));
+        assertSame(product("42"), page.product);
+        assertEquals(0, analyzer.findEntityCalls.get());
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertNull(new HandoffApplication(0).getEntityHandoff());
+    }
+
+    /** The entities are not Serializable: the session forgets them, and starts again with an empty EntityHandoff. */
+    @Test
+    public void notSerializedWithTheSession() throws Exception {
+        HandoffApplication application = new HandoffApplication(10);
+        String params = render(application.getEntityHandoff(), product("42"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(application);
+        out.close();
+        HandoffApplication deserialized = (HandoffApplication)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        EntityHandoff entityHandoff = deserialized.getEntityHandoff();
+        assertNotNull(entityHandoff);
+        assertTrue(entityHandoff.getEntities(ProductPage.class, params).isEmpty());
+    }
+}
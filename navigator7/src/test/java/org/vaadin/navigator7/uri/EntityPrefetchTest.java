@@ -0,0 +1,138 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.navigator7.uri.ProductUriAnalyzer.Product;
+
+/** EntityUriAnalyzer.prefetchEntities(): keys taken from the EntityCache, the others given to findEntities() at once,
+ * and the EntityCache metrics not biased by the prefetch.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class EntityPrefetchTest {
+
+    /** Supports findEntities(), for the given ids only (the others are left to findEntity()). */
+    static class BulkProductUriAnalyzer extends ProductUriAnalyzer {
+        int findEntitiesCalls;
+        final Set<String> bulkLoadable;
+
+        BulkProductUriAnalyzer(Set<String> bulkLoadable, String... ids) {
+            super(ids);
+            this.bulkLoadable = bulkLoadable;
+        }
+
+        @Override
+        public Map<Class<?>, Map<String, Product>> findEntities(Map<Class<? extends Product>, Set<String>> keys) {
+            findEntitiesCalls++;
+            Map<Class<?>, Map<String, Product>> result = new HashMap<Class<?>, Map<String, Product>>();
+            for (Map.Entry<Class<? extends Product>, Set<String>> classKeys : keys.entrySet()) {
+                if (!bulkLoadable.containsAll(classKeys.getValue())) {
+                    continue;  // Class left to findEntity().
+                }
+                Map<String, Product> found = new HashMap<String, Product>();
+                for (String pk : classKeys.getValue()) {
+                    if (db.containsKey(pk)) {
+                        found.put(pk, db.get(pk));
+                    }
+                }
+                result.put(classKeys.getKey(), found);
+            }
+            return result;
+        }
+    }
+
+    private final EntityCache cache = new EntityCache();
+
+    @Before
+    public void setUp() {
+        cache.configure(Product.class, 100, 0, TimeUnit.SECONDS);
+        EntityUriAnalyzer.beginRequest();
+    }
+
+    @After
+    public void tearDown() {
+        EntityUriAnalyzer.endRequest();
+    }
+
+    private static Map<Class<?>, Set<String>> keys(String... pks) {
+        return Collections.<Class<?>, Set<String>>singletonMap(Product.class, set(pks));
+    }
+
+    private static Set<String> set(String... pks) {
+        return new HashSet<String>(Arrays.asList(pks));
+    }
+
+    /** Without findEntities(), the prefetch leaves the keys to findEntity(), that counts one miss per key. */
+    @Test
+    public void oneMissPerColdKeyWithoutFindEntities() {
+        ProductUriAnalyzer analyzer = new ProductUriAnalyzer("1", "2");
+        analyzer.setEntityCache(cache);
+
+        analyzer.prefetchEntities(keys("1", "2"));
+        analyzer.find("1");
+        analyzer.find("2");
+
+        assertEquals(2, analyzer.findEntityCalls.get());
+        assertEquals(2, cache.getMissCount(Product.class));
+        assertEquals(0, cache.getHitCount(Product.class));
+    }
+
+    @Test
+    public void oneMissPerColdKeyWithFindEntities() {
+        BulkProductUriAnalyzer analyzer = new BulkProductUriAnalyzer(set("1", "2", "3"), "1", "2");
+        analyzer.setEntityCache(cache);
+
+        analyzer.prefetchEntities(keys("1", "2", "3"));
+        assertEquals(1, analyzer.findEntitiesCalls);
+        assertEquals(3, cache.getMissCount(Product.class));
+        assertEquals(2, cache.size(Product.class));
+
+        analyzer.find("1");
+        analyzer.find("3");  // Known as missing in the identity map.
+        assertEquals(0, analyzer.findEntityCalls.get());
+        assertEquals(3, cache.getMissCount(Product.class));
+    }
+
+    /** findEntities() declined the class: the keys probed by the prefetch are counted once, by findEntity(). */
+    @Test
+    public void oneMissPerColdKeyWhenFindEntitiesDeclines() {
+        BulkProductUriAnalyzer analyzer = new BulkProductUriAnalyzer(Collections.<String>emptySet(), "1", "2");
+        analyzer.setEntityCache(cache);
+
+        analyzer.prefetchEntities(keys("1", "2"));
+        analyzer.find("1");
+        analyzer.find("2");
+
+        assertEquals(2, analyzer.findEntityCalls.get());
+        assertEquals(2, cache.getMissCount(Product.class));
+    }
+
+    @Test
+    public void cachedKeysAreNotGivenToFindEntities() {
+        BulkProductUriAnalyzer analyzer = new BulkProductUriAnalyzer(set("2"), "1", "2");
+        analyzer.setEntityCache(cache);
+        Product cached = new Product("1");
+        cache.put(Product.class, "1", cached);
+
+        analyzer.prefetchEntities(keys("1", "2"));
+        assertEquals(1, analyzer.findEntitiesCalls);
+        assertEquals(1, cache.getHitCount(Product.class));
+        assertEquals(1, cache.getMissCount(Product.class));
+
+        assertSame(cached, analyzer.find("1"));  // From the identity map: no second hit.
+        assertEquals(1, cache.getHitCount(Product.class));
+        assertEquals(0, analyzer.findEntityCalls.get());
+    }
+}
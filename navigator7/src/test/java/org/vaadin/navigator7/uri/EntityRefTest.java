@@ -0,0 +1,141 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.navigator7.WebApplication;
+import org.vaadin.navigator7.uri.ProductUriAnalyzer.Product;
+
+/** Lazy loading of EntityRef @Param fields.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class EntityRefTest {
+
+    public static class ProductPage {
+        @Param(pos=0, required=true) EntityRef<Product> product;
+    }
+
+    /** Keys must be longs. */
+    static class LongProductUriAnalyzer extends ProductUriAnalyzer {
+        LongProductUriAnalyzer(String... ids) {
+            super(ids);
+        }
+
+        @Override
+        protected boolean useLongPrimaryKeys() {
+            return true;
+        }
+    }
+
+    private ParamUriAnalyzer previousUriAnalyzer;
+    private ProductUriAnalyzer analyzer = new ProductUriAnalyzer("42");
+
+    @Before
+    public void setUp() {
+        WebApplication.init(WebApplication.class);
+        previousUriAnalyzer = WebApplication.getCurrent().getUriAnalyzer();
+        WebApplication.getCurrent().setUriAnalyzer(analyzer);
+    }
+
+    @After
+    public void tearDown() {
+        WebApplication.getCurrent().setUriAnalyzer(previousUriAnalyzer);
+    }
+
+
+    @Test
+    public void resolvedOnce() {
+        EntityRef<Product> ref = EntityRef.fromKey(Product.class, "42");
+        assertFalse(ref.isLoaded());
+        assertEquals("42", ref.getKey());
+        assertEquals(0, analyzer.findEntityCalls.get());
+
+        Product product = ref.get();
+        assertSame(analyzer.db.get("42"), product);
+        assertTrue(ref.isLoaded());
+        assertSame(product, ref.get());
+        assertEquals(1, analyzer.findEntityCalls.get());
+    }
+
+    /** No entity for that key: get() returns null, and does not ask the DB again. */
+    @Test
+    public void missingEntityIsNull() {
+        EntityRef<Product> ref = EntityRef.fromKey(Product.class, "7");
+        assertNull(ref.get());
+        assertTrue(ref.isLoaded());
+        assertNull(ref.get());
+        assertEquals(1, analyzer.findEntityCalls.get());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nullKeyIsRejected() {
+        EntityRef.fromKey(Product.class, null);
+    }
+
+    @Test
+    public void ofLoadedEntity() {
+        Product product = analyzer.db.get("42");
+        EntityRef<Product> ref = EntityRef.of(product);
+        assertTrue(ref.isLoaded());
+        assertEquals("42", ref.getKey());
+        assertSame(Product.class, ref.getEntityClass());
+        assertSame(product, ref.get());
+        assertEquals(0, analyzer.findEntityCalls.get());
+    }
+
+    /** The entity is not serialized with the reference: it is loaded again after deserialization. */
+    @Test
+    public void loadedAgainAfterDeserialization() throws Exception {
+        EntityRef<Product> ref = EntityRef.fromKey(Product.class, "42");
+        ref.get();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(ref);
+        out.close();
+        @SuppressWarnings("unchecked")
+        EntityRef<Product> copy = (EntityRef<Product>)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertFalse(copy.isLoaded());
+        assertEquals("42", copy.getKey());
+        assertSame(analyzer.db.get("42"), copy.get());
+        assertEquals(2, analyzer.findEntityCalls.get());
+    }
+
+    /** The injection only checks the key: findEntity() is called by get(). */
+    @Test
+    public void injectedWithoutDbAccess() {
+        ProductPage page = new ProductPage();
+        assertNull(ParamInjector.validateAndInject(page, "42", false));
+        assertNotNull(page.product);
+        assertEquals(0, analyzer.findEntityCalls.get());
+        assertSame(analyzer.db.get("42"), page.product.get());
+        assertEquals(1, analyzer.findEntityCalls.get());
+    }
+
+    @Test
+    public void invalidKeyIsAProblem() {
+        analyzer = new LongProductUriAnalyzer("42");
+        WebApplication.getCurrent().setUriAnalyzer(analyzer);
+
+        ProductPage page = new ProductPage();
+        String problem = ParamInjector.validateAndInject(page, "abc", false);
+        assertNotNull(problem);
+        assertTrue(problem, problem.startsWith("Invalid key 'abc'"));
+        assertNull(page.product);
+        assertEquals(0, analyzer.findEntityCalls.get());
+    }
+}
@@ -0,0 +1,96 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/** Name (and alias) to constant tables of EnumLookup.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class EnumLookupTest {
+
+    public enum Color { RED, GREEN }
+
+    public enum Language {
+        @ParamAlias({"en", "english"}) EN,
+        @ParamAlias({"fr", "francais"}) FR
+    }
+
+    @ParamEnum(ignoreCase=true)
+    public enum Size {
+        @ParamAlias("s") SMALL,
+        LARGE
+    }
+
+    public enum DuplicateAlias {
+        @ParamAlias("x") A,
+        @ParamAlias("x") B
+    }
+
+    @ParamEnum(ignoreCase=true)
+    public enum DuplicateIgnoringCase {
+        a, A
+    }
+
+
+    @Test
+    public void namesAreCaseSensitive() {
+        EnumLookup lookup = EnumLookup.forClass(Color.class);
+        assertSame(Color.RED, lookup.fromString("RED"));
+        assertSame(Color.GREEN, lookup.fromString("GREEN"));
+        assertNull(lookup.fromString("red"));
+        assertNull(lookup.fromString("Green"));
+    }
+
+    @Test
+    public void unknownNamesAreNull() {
+        EnumLookup lookup = EnumLookup.forClass(Color.class);
+        assertNull(lookup.fromString("BLUE"));
+        assertNull(lookup.fromString(""));
+        assertNull(lookup.fromString("0"));  // No ordinal.
+    }
+
+    @Test
+    public void aliases() {
+        EnumLookup lookup = EnumLookup.forClass(Language.class);
+        assertSame(Language.EN, lookup.fromString("EN"));
+        assertSame(Language.EN, lookup.fromString("en"));
+        assertSame(Language.FR, lookup.fromString("francais"));
+        assertNull(lookup.fromString("English"));  // Aliases are case sensitive too.
+        assertEquals("FR", lookup.toString(Language.FR));  // Links use name(), not the aliases.
+    }
+
+    @Test
+    public void ignoreCase() {
+        EnumLookup lookup = EnumLookup.forClass(Size.class);
+        assertSame(Size.SMALL, lookup.fromString("small"));
+        assertSame(Size.SMALL, lookup.fromString("S"));
+        assertSame(Size.LARGE, lookup.fromString("Large"));
+        assertNull(lookup.fromString("medium"));
+        assertEquals("LARGE", lookup.toString(Size.LARGE));
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void duplicateAliasIsRejected() {
+        EnumLookup.forClass(DuplicateAlias.class);
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void duplicateNameIgnoringCaseIsRejected() {
+        EnumLookup.forClass(DuplicateIgnoringCase.class);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void notAnEnum() {
+        EnumLookup.forClass(String.class);
+    }
+
+    @Test
+    public void builtOncePerClass() {
+        assertSame(EnumLookup.forClass(Color.class), EnumLookup.forClass(Color.class));
+        assertSame(Color.class, EnumLookup.forClass(Color.class).getEnumClass());
+    }
+}
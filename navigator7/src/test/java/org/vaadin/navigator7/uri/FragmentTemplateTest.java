@@ -0,0 +1,91 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.navigator7.WebApplication;
+
+/** Fragments written by FragmentTemplate, from values (links) and from the fields of an object.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class FragmentTemplateTest {
+
+    public static class Target {
+        @Param(pos=0, required=true) public long id;
+        @Param(pos=1) public String tab;
+        @Param public Integer page;
+        @Param(name="q") public String query;
+    }
+
+    private FragmentTemplate template;
+
+    @Before
+    public void setUp() {
+        WebApplication.init(WebApplication.class);
+        template = WebApplication.getCurrent().getUriAnalyzer().getFragmentTemplate(Target.class);
+    }
+
+    private static Map<String, Object> named(Object... nameValues) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            result.put((String)nameValues[i], nameValues[i + 1]);
+        }
+        return result;
+    }
+
+    @Test
+    public void positionalThenNamed() {
+        assertEquals("42/info/page=3/q=abc", template.generate(new Object[] {42L, "info"}, named("page", 3, "q", "abc")));
+        assertEquals("42", template.generate(new Object[] {42L}, null));
+        assertNull(template.generate(new Object[0], null));
+    }
+
+    @Test
+    public void nullOptionalPositionalKeepsItsPlace() {
+        assertEquals("42//page=3", template.generate(new Object[] {42L, null}, named("page", 3)));
+    }
+
+    @Test
+    public void nullOptionalNamedIsLeftOut() {
+        assertEquals("42/q=abc", template.generate(new Object[] {42L}, named("page", null, "q", "abc")));
+        assertEquals("42", template.generate(new Object[] {42L}, named("page", null)));
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void nullRequiredPositional() {
+        template.generate(new Object[] {null}, null);
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void incompatibleType() {
+        template.generate(new Object[] {42L}, named("page", "three"));
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void unknownName() {
+        template.generate(new Object[] {42L}, named("nope", 1));
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void tooManyPositional() {
+        template.generate(new Object[] {42L, "info", "more"}, null);
+    }
+
+    @Test
+    public void fromFields() {
+        Target target = new Target();
+        target.id = 42;
+        target.query = "abc";
+        assertEquals("42/q=abc", template.generate(target));  // No tab: the named value takes position 1.
+
+        target.tab = "info";
+        target.page = 3;
+        assertEquals("42/info/page=3/q=abc", template.generate(target));
+    }
+}
@@ -0,0 +1,115 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.navigator7.WebApplication;
+import org.vaadin.navigator7.uri.ProductUriAnalyzer.Product;
+
+/** Request-scoped identity map of EntityUriAnalyzer: each (class, pk) is given to findEntity() at most once per request
+ * (between the beginRequest() and endRequest() calls of NavigableApplication.transactionStart() and transactionEnd()).
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class IdentityMapTest {
+
+    public static class ProductPage {
+        @Param(pos=0, required=true) Product product;
+        @Param Product related;
+    }
+
+    /** Keys are parsed as longs: "42" and "042" are the same entity. */
+    static class LongProductUriAnalyzer extends ProductUriAnalyzer {
+        LongProductUriAnalyzer(String... ids) {
+            super(ids);
+        }
+
+        @Override
+        protected boolean useLongPrimaryKeys() {
+            return true;
+        }
+    }
+
+    private ParamUriAnalyzer previousUriAnalyzer;
+    private ProductUriAnalyzer analyzer = new ProductUriAnalyzer("42", "43");
+
+    @Before
+    public void setUp() {
+        WebApplication.init(WebApplication.class);
+        previousUriAnalyzer = WebApplication.getCurrent().getUriAnalyzer();
+        WebApplication.getCurrent().setUriAnalyzer(analyzer);
+    }
+
+    @After
+    public void tearDown() {
+        EntityUriAnalyzer.endRequest();
+        WebApplication.getCurrent().setUriAnalyzer(previousUriAnalyzer);
+    }
+
+    @Test
+    public void sameKeyLoadedOncePerRequest() {
+        EntityUriAnalyzer.beginRequest();
+        Product product = analyzer.find("42");
+        assertSame(product, analyzer.find("42"));
+        assertEquals(1, analyzer.findEntityCalls.get());
+        assertEquals(1, analyzer.getIdentityMapHits());
+        assertEquals(1, analyzer.getIdentityMapMisses());
+
+        analyzer.find("43");
+        assertEquals(2, analyzer.findEntityCalls.get());
+    }
+
+    @Test
+    public void missingEntityIsRememberedDuringTheRequest() {
+        EntityUriAnalyzer.beginRequest();
+        assertNull(analyzer.find("7"));
+        assertNull(analyzer.find("7"));
+        assertEquals(1, analyzer.findEntityCalls.get());
+    }
+
+    @Test
+    public void clearedByEndRequest() {
+        EntityUriAnalyzer.beginRequest();
+        analyzer.find("42");
+        EntityUriAnalyzer.endRequest();
+
+        EntityUriAnalyzer.beginRequest();
+        analyzer.find("42");
+        assertEquals(2, analyzer.findEntityCalls.get());
+    }
+
+    @Test
+    public void noIdentityMapOutsideARequest() {
+        analyzer.find("42");
+        analyzer.find("42");
+        assertEquals(2, analyzer.findEntityCalls.get());
+        assertEquals(0, analyzer.getIdentityMapHits());
+    }
+
+    @Test
+    public void longKeysOfTheSameEntity() {
+        analyzer = new LongProductUriAnalyzer("42");
+        EntityUriAnalyzer.beginRequest();
+        assertSame(analyzer.find("42"), analyzer.find("042"));
+        assertEquals(1, analyzer.findEntityCalls.get());
+    }
+
+    /** Positional and named params of a page, and the injection again by reloadCurrentPage() in the same request. */
+    @Test
+    public void injectionsOfTheRequestShareTheEntities() {
+        EntityUriAnalyzer.beginRequest();
+        ProductPage page = new ProductPage();
+        assertNull(ParamInjector.validateAndInject(page, "42/related=42", false));
+        assertSame(analyzer.db.get("42"), page.product);
+        assertSame(page.product, page.related);
+
+        ProductPage reloaded = new ProductPage();
+        assertNull(ParamInjector.validateAndInject(reloaded, "42", true));
+        assertSame(page.product, reloaded.product);
+        assertEquals(1, analyzer.findEntityCalls.get());
+    }
+}
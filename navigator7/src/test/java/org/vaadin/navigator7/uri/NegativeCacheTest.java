@@ -0,0 +1,65 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/** Size bound and time to live of the NegativeCache.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class NegativeCacheTest {
+
+    @Test
+    public void addContainsRemove() {
+        NegativeCache<String> cache = new NegativeCache<String>(10, 1, TimeUnit.HOURS);
+        assertFalse(cache.contains("a"));
+        cache.add("a");
+        assertTrue(cache.contains("a"));
+        cache.remove("a");
+        assertFalse(cache.contains("a"));
+    }
+
+    @Test
+    public void expiredKeysAreForgotten() throws InterruptedException {
+        NegativeCache<String> cache = new NegativeCache<String>(10, 1, TimeUnit.MILLISECONDS);
+        cache.add("a");
+        Thread.sleep(10);
+        assertFalse(cache.contains("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void sizeIsBounded() {
+        NegativeCache<Integer> cache = new NegativeCache<Integer>(100, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 1000; i++) {
+            cache.add(i);
+            assertTrue(cache.size() <= 100);
+        }
+        assertTrue(cache.contains(999));  // The last added key is always kept.
+    }
+
+    @Test
+    public void expiredKeysAreRemovedFirst() throws InterruptedException {
+        NegativeCache<Integer> cache = new NegativeCache<Integer>(4, 50, TimeUnit.MILLISECONDS);
+        cache.add(1);
+        cache.add(2);
+        Thread.sleep(100);
+        cache.add(3);
+        cache.add(4);
+        cache.add(5);  // Full: 1 and 2 are expired, and there is enough room without removing valid keys.
+        assertEquals(3, cache.size());
+        assertTrue(cache.contains(3));
+        assertTrue(cache.contains(4));
+        assertTrue(cache.contains(5));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void maxSizeMustBePositive() {
+        new NegativeCache<String>(0, 1, TimeUnit.HOURS);
+    }
+}
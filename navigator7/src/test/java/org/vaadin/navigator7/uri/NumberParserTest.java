@@ -0,0 +1,123 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** NumberParser must accept and reject the same texts as Integer.parseInt(), Long.parseLong() and Double.parseDouble().
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class NumberParserTest {
+
+    private static final String[] LONG_TEXTS = {
+        "0", "7", "-7", "+7", "007", "-0", "123456789",
+        "2147483647", "2147483648", "-2147483648", "-2147483649",
+        "9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+        "99999999999999999999", "-99999999999999999999",
+        "", "+", "-", "--1", "+-1", "1-", "12a", "a12", " 1", "1 ", "1.0", "0x10", "1e3"
+    };
+
+    @Test
+    public void parseLongAgreesWithLongParseLong() {
+        for (String text : LONG_TEXTS) {
+            ParseResult result = NumberParser.parseLong(text);
+            try {
+                long expected = Long.parseLong(text);
+                assertTrue(text, result.isValid());
+                assertEquals(text, expected, result.getLong());
+            } catch (NumberFormatException e) {
+                assertFalse(text, result.isValid());
+            }
+        }
+    }
+
+    @Test
+    public void parseIntAgreesWithIntegerParseInt() {
+        for (String text : LONG_TEXTS) {
+            ParseResult result = NumberParser.parseInt(text);
+            try {
+                int expected = Integer.parseInt(text);
+                assertTrue(text, result.isValid());
+                assertEquals(text, expected, result.getInt());
+            } catch (NumberFormatException e) {
+                assertFalse(text, result.isValid());
+            }
+        }
+    }
+
+    @Test
+    public void minValuesHaveNoPositiveCounterpart() {
+        assertEquals(Long.MIN_VALUE, NumberParser.parseLong("-9223372036854775808").getLong());
+        assertFalse(NumberParser.parseLong("9223372036854775808").isValid());
+        assertEquals(Integer.MIN_VALUE, NumberParser.parseInt("-2147483648").getInt());
+        assertFalse(NumberParser.parseInt("2147483648").isValid());
+    }
+
+    @Test
+    public void signAloneIsInvalid() {
+        assertFalse(NumberParser.parseLong("+").isValid());
+        assertFalse(NumberParser.parseLong("-").isValid());
+        assertFalse(NumberParser.parseDouble("+").isValid());
+        assertFalse(NumberParser.parseDouble("-").isValid());
+    }
+
+    @Test
+    public void parseLongWithBounds() {
+        assertEquals(127, NumberParser.parseLong("127", 0, 3, Byte.MIN_VALUE, Byte.MAX_VALUE).getLong());
+        assertFalse(NumberParser.parseLong("128", 0, 3, Byte.MIN_VALUE, Byte.MAX_VALUE).isValid());
+        assertEquals(-128, NumberParser.parseLong("-128", 0, 4, Byte.MIN_VALUE, Byte.MAX_VALUE).getLong());
+        assertFalse(NumberParser.parseLong("-129", 0, 4, Byte.MIN_VALUE, Byte.MAX_VALUE).isValid());
+    }
+
+    @Test
+    public void parseRangeOfFragment() {
+        String fragment = "Product/id=42/x";
+        assertEquals(42, NumberParser.parseLong(fragment, 11, 13).getLong());
+        assertFalse(NumberParser.parseLong(fragment, 11, 14).isValid());
+        assertFalse(NumberParser.parseLong(fragment, 11, 11).isValid());  // Empty range.
+        assertEquals(42, NumberParser.parseLong(new StringBuilder(fragment), 11, 13).getLong());
+    }
+
+    @Test
+    public void parseDoubleAgreesWithDoubleParseDouble() {
+        String[] texts = {
+            "0", "1.5", "-1.5", "+1.5", ".5", "5.", "1e3", "1E-3", "-1.5e+10", "1.7976931348623157E308", "4.9E-324",
+            "NaN", "Infinity", "-Infinity", "+Infinity",
+            "", ".", "-.", "e3", "1e", "1e+", "1.5.2", "1,5", "abc", "-NaN", "1d", "1f", "0x1p3", " 1", "1 "
+        };
+        for (String text : texts) {
+            ParseResult result = NumberParser.parseDouble(text);
+            // Only the forms of Double.toString(): no Java literal suffix, hexadecimal, spaces or signed NaN.
+            boolean expectedValid = !text.endsWith("d") && !text.endsWith("f") && !text.startsWith("0x") && text.trim().equals(text) && !text.equals("-NaN");
+            try {
+                double expected = Double.parseDouble(text);
+                assertEquals(text, expectedValid, result.isValid());
+                if (expectedValid) {
+                    assertEquals(text, expected, result.getDouble(), 0d);
+                }
+            } catch (NumberFormatException e) {
+                assertFalse(text, result.isValid());
+            }
+        }
+    }
+
+    @Test
+    public void invalidResultIsShared() {
+        assertSame(ParseResult.INVALID, NumberParser.parseLong("x"));
+        assertSame(ParseResult.INVALID, NumberParser.parseInt("99999999999"));
+        assertSame(ParseResult.INVALID, NumberParser.parseDouble("1e"));
+    }
+
+    @Test
+    public void smallIntegersAreShared() {
+        assertSame(NumberParser.parseInt("42"), NumberParser.parseLong("+042"));
+        assertSame(NumberParser.parseLong("-128"), NumberParser.parseLong("-128"));
+        assertSame(NumberParser.parseLong("1023"), NumberParser.parseLong("1023"));
+        assertEquals(1024, NumberParser.parseLong("1024").getLong());
+        assertEquals(-129, NumberParser.parseInt("-129").getInt());
+    }
+}
@@ -0,0 +1,65 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Built-in converters, injecting from a range of the fragment.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class ParamConverterRegistryTest {
+
+    public static class Target {
+        public boolean flag;
+        public int count;
+        public long id;
+    }
+
+    private final ParamConverterRegistry registry = new ParamConverterRegistry();
+
+    private String inject(String fieldName, CharSequence text, int start, int end, Target target) throws Exception {
+        ParamFieldAccessor accessor = ParamFieldAccessor.create(Target.class.getField(fieldName));
+        return registry.get(Target.class.getField(fieldName).getType()).injectInto(target, accessor, text, start, end);
+    }
+
+    @Test
+    public void primitiveBooleanAsBooleanParseBoolean() throws Exception {
+        String[] values = { "true", "TRUE", "True", "tRuE", "false", "yes", "1", "", "truee", "tru" };
+        for (String value : values) {
+            Target target = new Target();
+            target.flag = !Boolean.parseBoolean(value);
+            StringBuilder fragment = new StringBuilder("Page/flag=").append(value).append("/x");  // No String: the range must be read in place.
+            assertNull(value, inject("flag", fragment, 10, 10 + value.length(), target));
+            assertEquals(value, Boolean.parseBoolean(value), target.flag);
+        }
+    }
+
+    @Test
+    public void primitiveInt() throws Exception {
+        Target target = new Target();
+        assertNull(inject("count", "a/count=-12/b", 8, 11, target));
+        assertEquals(-12, target.count);
+        assertNotNull(inject("count", "a/count=12x/b", 8, 11, target));  // Problem reported, no exception.
+        assertNotNull(inject("count", "a/count=2147483648", 8, 18, target));
+    }
+
+    @Test
+    public void primitiveLong() throws Exception {
+        Target target = new Target();
+        assertNull(inject("id", "-9223372036854775808", 0, 20, target));
+        assertEquals(Long.MIN_VALUE, target.id);
+    }
+
+    @Test
+    public void basicTypes() {
+        assertTrue(ParamConverterRegistry.isBasicType(boolean.class));
+        assertTrue(ParamConverterRegistry.isBasicType(String.class));
+        assertFalse(ParamConverterRegistry.isBasicType(char.class));
+        assertFalse(ParamConverterRegistry.isBasicType(Object.class));
+    }
+}
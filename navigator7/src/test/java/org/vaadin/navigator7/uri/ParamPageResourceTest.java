@@ -0,0 +1,89 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.navigator7.NavigatorConfig;
+import org.vaadin.navigator7.WebApplication;
+
+import com.vaadin.ui.VerticalLayout;
+
+/** Values of a ParamPageResource injected directly (Navigator.navigateTo()) are the same as the ones parsed from its fragment (link followed).
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class ParamPageResourceTest {
+
+    public enum Color { RED, GREEN }
+
+    public static class ProductPage extends VerticalLayout {
+        @Param(pos=0, required=true) long id;
+        @Param(pos=1) String tab;
+        @Param Integer page;
+        @Param boolean preview;
+        @Param Color color;
+    }
+
+    private NavigatorConfig navigatorConfig;
+
+    @Before
+    public void setUp() {
+        WebApplication.init(WebApplication.class);
+        navigatorConfig = WebApplication.getCurrent().getNavigatorConfig();
+        navigatorConfig.registerPage(ProductPage.class);
+    }
+
+    @After
+    public void tearDown() {
+        navigatorConfig.unregisterPage(ProductPage.class);
+    }
+
+    /** Injects resource both ways and checks that the pages are equal. */
+    private void assertSameInjection(ParamPageResource resource) {
+        ProductPage injected = new ProductPage();
+        assertNull(ParamInjector.validateAndInjectValues(injected, resource.getPosParams(), resource.getNamedParams(), resource.getParams(), false));
+        ProductPage parsed = new ProductPage();
+        assertNull(ParamInjector.validateAndInject(parsed, resource.getParams(), false));
+
+        assertEquals(parsed.id, injected.id);
+        assertEquals(parsed.tab, injected.tab);
+        assertEquals(parsed.page, injected.page);
+        assertEquals(parsed.preview, injected.preview);
+        assertEquals(parsed.color, injected.color);
+    }
+
+
+    @Test
+    public void directInjectionMatchesParsing() {
+        assertSameInjection(new ParamPageResource(ProductPage.class, 42L, "specs")
+                .addParam("page", 3).addParam("preview", true).addParam("color", Color.GREEN));
+    }
+
+    @Test
+    public void directInjectionMatchesParsingWithMissingValues() {
+        assertSameInjection(new ParamPageResource(ProductPage.class, 42L));
+        assertSameInjection(new ParamPageResource(ProductPage.class, 42L, null).addParam("page", 3));  // "42//page=3"
+        assertSameInjection(new ParamPageResource(ProductPage.class, 42L, null));  // "42/"
+    }
+
+    @Test
+    public void posParamsAreCopied() {
+        Object[] values = {42L, "specs"};
+        ParamPageResource resource = new ParamPageResource(ProductPage.class, values);
+        String params = resource.getParams();
+
+        values[1] = "reviews";  // After construction.
+        assertEquals(params, resource.getParams());
+        resource.getPosParams()[1] = "reviews";
+        assertEquals(params, resource.getParams());
+        assertArrayEquals(new Object[] {42L, "specs"}, resource.getPosParams());
+
+        ProductPage page = new ProductPage();
+        ParamInjector.validateAndInjectValues(page, resource.getPosParams(), resource.getNamedParams(), params, false);
+        assertEquals("specs", page.tab);
+    }
+}
@@ -0,0 +1,108 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/** ParsedFragment must give the same results as the former String.split() based ParamUriAnalyzer methods.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class ParsedFragmentTest {
+
+    @Test
+    public void sameAsSplitForAllShortFragments() {
+        // Every fragment up to 6 chars made of a, b and the separators: trailing separators, "a=b=c", "a=", "=b", "//", ...
+        for (String fragment : allStrings("ab/=", 6)) {
+            assertSameAsSplit(fragment, "/", "=");
+        }
+    }
+
+    @Test
+    public void sameAsSplitWithOtherSeparators() {
+        for (String fragment : allStrings("a&:", 5)) {
+            assertSameAsSplit(fragment, "&", ":");
+        }
+        for (String fragment : allStrings("a;,", 5)) {
+            assertSameAsSplit(fragment, ";;", ",");  // Multi-char separator.
+        }
+    }
+
+    @Test
+    public void examples() {
+        ParsedFragment parsed = new ParsedFragment("246/AAA/userId=0231", "/", "=");
+        assertEquals(3, parsed.countParams());
+        assertEquals("AAA", parsed.getString(1));
+        assertEquals("0231", parsed.getString("userId"));
+        assertEquals("userId=0231", parsed.getString(2));  // As split(): the whole pair at that position.
+        assertNull(parsed.getString(3));
+        assertNull(parsed.getString("AAA"));
+
+        parsed = new ParsedFragment("a=b=c/x=1/x=2/", "/", "=");
+        assertNull(parsed.getString("a"));  // More than one value separator.
+        assertEquals("1", parsed.getString("x"));  // First occurrence wins.
+        assertEquals(3, parsed.countParams());  // Trailing empty param removed.
+
+        int index = parsed.getNamedIndex("x");
+        assertEquals(8, parsed.getValueStart(index));
+        assertEquals(9, parsed.getValueEnd(index));
+    }
+
+    @Test
+    public void nullFragment() {
+        ParsedFragment parsed = new ParsedFragment(null, "/", "=");
+        assertEquals(0, parsed.countParams());
+        assertNull(parsed.getString(0));
+        assertNull(parsed.getString("a"));
+    }
+
+
+    private static void assertSameAsSplit(String fragment, String paramsSeparator, String valueSeparator) {
+        ParsedFragment parsed = new ParsedFragment(fragment, paramsSeparator, valueSeparator);
+        String[] pairs = fragment.split(paramsSeparator);
+        assertEquals("countParams of [" + fragment + "]", pairs.length, parsed.countParams());
+        for (int position = 0; position <= pairs.length; position++) {
+            assertEquals("position " + position + " of [" + fragment + "]", position < pairs.length ? pairs[position] : null, parsed.getString(position));
+        }
+        for (String key : allStrings(fragment.replace(paramsSeparator, "").replace(valueSeparator, ""), 2)) {
+            assertEquals("key [" + key + "] of [" + fragment + "]", splitGetString(pairs, valueSeparator, key), parsed.getString(key));
+        }
+    }
+
+    /** ParamUriAnalyzer.getString(String, String) before ParsedFragment. */
+    private static String splitGetString(String[] pairs, String valueSeparator, String key) {
+        for (String pair : pairs) {
+            String[] keyValue = pair.split(valueSeparator);
+            if (keyValue.length == 2 && keyValue[0].equals(key)) {
+                return keyValue[1];
+            }
+        }
+        return null;
+    }
+
+    /** All the strings of at most maxLength chars of alphabet (including ""). */
+    private static Set<String> allStrings(String alphabet, int maxLength) {
+        Set<String> result = new LinkedHashSet<String>();
+        result.add("");
+        List<String> previousLength = new ArrayList<String>(result);
+        for (int length = 1; length <= maxLength; length++) {
+            List<String> currentLength = new ArrayList<String>();
+            for (String prefix : previousLength) {
+                for (int c = 0; c < alphabet.length(); c++) {
+                    String candidate = prefix + alphabet.charAt(c);
+                    if (result.add(candidate)) {
+                        currentLength.add(candidate);
+                    }
+                }
+            }
+            previousLength = currentLength;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,228 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.navigator7.uri.ProductUriAnalyzer.Product;
+
+/** EntityUriAnalyzer.loadEntitiesAsync() and PendingEntities: timeout, fallback to the request thread, cancellation, failing executors.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class PendingEntitiesTest {
+
+    /** findEntity() blocks the executor threads until released, and returns a new instance at each call. */
+    static class SlowProductUriAnalyzer extends ProductUriAnalyzer {
+        final Thread requestThread = Thread.currentThread();
+        final CountDownLatch taskStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch taskDone = new CountDownLatch(1);
+        volatile boolean failInTasks;
+
+        @Override
+        public Product findEntity(Class<? extends Product> entityClass, String pk) {
+            findEntityCalls.incrementAndGet();
+            if (Thread.currentThread() != requestThread) {
+                taskStarted.countDown();
+                try {
+                    if (failInTasks) {
+                        throw new IllegalStateException("DB down");
+                    }
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    taskDone.countDown();
+                }
+            }
+            return new Product(pk);
+        }
+    }
+
+    /** Accepts the first tasks (without running them), then throws. */
+    static class FailingExecutor extends AbstractExecutorService {
+        final List<Future<?>> accepted = new ArrayList<Future<?>>();
+        final int acceptedCount;
+        final RuntimeException exception;
+
+        FailingExecutor(int acceptedCount, RuntimeException exception) {
+            this.acceptedCount = acceptedCount;
+            this.exception = exception;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (accepted.size() >= acceptedCount) {
+                throw exception;
+            }
+            accepted.add((Future<?>)command);  // The FutureTask of submit().
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @Before
+    public void setUp() {
+        EntityUriAnalyzer.beginRequest();
+    }
+
+    @After
+    public void tearDown() {
+        EntityUriAnalyzer.endRequest();
+        executor.shutdownNow();
+    }
+
+    private static Map<Class<?>, Set<String>> keys(String... pks) {
+        return Collections.<Class<?>, Set<String>>singletonMap(Product.class, new LinkedHashSet<String>(Arrays.asList(pks)));
+    }
+
+
+    @Test
+    public void joinedEntitiesAreInTheIdentityMap() {
+        ProductUriAnalyzer analyzer = new ProductUriAnalyzer("1", "2");
+        EntityUriAnalyzer<Product>.PendingEntities pending = analyzer.loadEntitiesAsync(keys("1", "2", "3"), executor);
+        assertNotNull(pending);
+        pending.join(10, TimeUnit.SECONDS);
+        assertEquals(3, analyzer.findEntityCalls.get());
+
+        assertSame(analyzer.db.get("1"), analyzer.find("1"));
+        assertSame(analyzer.db.get("2"), analyzer.find("2"));
+        assertNull(analyzer.find("3"));
+        assertEquals(3, analyzer.findEntityCalls.get());  // No DB access from the request thread.
+    }
+
+    @Test
+    public void nothingToLoadOutsideARequest() {
+        EntityUriAnalyzer.endRequest();
+        assertNull(new ProductUriAnalyzer("1").loadEntitiesAsync(keys("1"), executor));
+    }
+
+    /** The request thread stops waiting after the timeout and loads the entity itself. The late task does not overwrite it in the cache. */
+    @Test
+    public void timeoutFallsBackToTheRequestThread() throws Exception {
+        SlowProductUriAnalyzer analyzer = new SlowProductUriAnalyzer();
+        EntityCache cache = new EntityCache();
+        cache.configure(Product.class, 10, 0, TimeUnit.SECONDS);
+        analyzer.setEntityCache(cache);
+
+        EntityUriAnalyzer<Product>.PendingEntities pending = analyzer.loadEntitiesAsync(keys("1"), executor);
+        long start = System.nanoTime();
+        pending.join(50, TimeUnit.MILLISECONDS);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        Product loaded = analyzer.find("1");  // By the request thread.
+        assertEquals(2, analyzer.findEntityCalls.get());
+        assertSame(loaded, cache.get(Product.class, "1"));
+
+        analyzer.release.countDown();  // The cancelled task finishes its findEntity()...
+        assertTrue(analyzer.taskDone.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertSame(loaded, cache.get(Product.class, "1"));  // ... but drops its entity.
+    }
+
+    @Test
+    public void cancelledTasksDropTheirEntity() throws Exception {
+        SlowProductUriAnalyzer analyzer = new SlowProductUriAnalyzer();
+        EntityCache cache = new EntityCache();
+        cache.configure(Product.class, 10, 0, TimeUnit.SECONDS);
+        analyzer.setEntityCache(cache);
+
+        EntityUriAnalyzer<Product>.PendingEntities pending = analyzer.loadEntitiesAsync(keys("1"), executor);
+        assertTrue(analyzer.taskStarted.await(5, TimeUnit.SECONDS));  // Too late to prevent findEntity().
+        pending.cancel();
+        analyzer.release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, cache.size(Product.class));
+    }
+
+    /** A findEntity() failure in a task is thrown again by the request thread, that loads the entity when it needs it. */
+    @Test
+    public void failedTaskIsLoadedAgainByTheRequestThread() {
+        SlowProductUriAnalyzer analyzer = new SlowProductUriAnalyzer();
+        analyzer.failInTasks = true;
+        analyzer.loadEntitiesAsync(keys("1"), executor).join(10, TimeUnit.SECONDS);
+        assertEquals(1, analyzer.findEntityCalls.get());
+
+        assertEquals("1", analyzer.find("1").id);
+        assertEquals(2, analyzer.findEntityCalls.get());
+    }
+
+    /** A saturated executor: the entities are loaded by the request thread. */
+    @Test
+    public void rejectedTasksAreLoadedByTheRequestThread() {
+        ProductUriAnalyzer analyzer = new ProductUriAnalyzer("1", "2");
+        FailingExecutor failingExecutor = new FailingExecutor(1, new RejectedExecutionException("full"));
+        EntityUriAnalyzer<Product>.PendingEntities pending = analyzer.loadEntitiesAsync(keys("1", "2"), failingExecutor);
+        assertNotNull(pending);  // Only "1" has been accepted.
+        assertEquals(1, failingExecutor.accepted.size());
+        pending.join(10, TimeUnit.MILLISECONDS);  // Never run by the executor.
+        assertTrue(failingExecutor.accepted.get(0).isCancelled());
+
+        assertSame(analyzer.db.get("1"), analyzer.find("1"));
+        assertSame(analyzer.db.get("2"), analyzer.find("2"));
+        assertEquals(2, analyzer.findEntityCalls.get());
+    }
+
+    /** Any other executor failure is thrown, and the tasks already submitted are cancelled. */
+    @Test
+    public void failingExecutorCancelsTheSubmittedTasks() {
+        ProductUriAnalyzer analyzer = new ProductUriAnalyzer("1", "2");
+        IllegalStateException failure = new IllegalStateException("executor is broken");
+        FailingExecutor failingExecutor = new FailingExecutor(1, failure);
+        try {
+            analyzer.loadEntitiesAsync(keys("1", "2"), failingExecutor);
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertTrue(failingExecutor.accepted.get(0).isCancelled());
+    }
+}
@@ -0,0 +1,45 @@
+package org.vaadin.navigator7.uri;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** EntityUriAnalyzer over an in-memory "DB" of products, that counts the findEntity() calls.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class ProductUriAnalyzer extends EntityUriAnalyzer<ProductUriAnalyzer.Product> {
+
+    public static class Product {
+        public final String id;
+
+        public Product(String id) {
+            this.id = id;
+        }
+    }
+
+    public final Map<String, Product> db = new ConcurrentHashMap<String, Product>();
+    public final AtomicInteger findEntityCalls = new AtomicInteger();
+
+    public ProductUriAnalyzer(String... ids) {
+        for (String id : ids) {
+            db.put(id, new Product(id));
+        }
+    }
+
+    @Override
+    public Product findEntity(Class<? extends Product> entityClass, String pk) {
+        findEntityCalls.incrementAndGet();
+        return db.get(pk);
+    }
+
+    @Override
+    public String getEntityFragmentValue(Product entity) {
+        return entity.id;
+    }
+
+    /** Same as a findEntity() from a page: through the identity map of the request (if any) and the caches. */
+    Product find(String pk) {
+        return findEntity(Product.class, pk, 0, pk.length());
+    }
+}
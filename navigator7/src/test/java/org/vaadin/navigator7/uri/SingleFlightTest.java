@@ -0,0 +1,161 @@
+package org.vaadin.navigator7.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.vaadin.navigator7.uri.ProductUriAnalyzer.Product;
+
+/** EntityUriAnalyzer.enableSingleFlightLoading(): concurrent loads of the same entity share one findEntity() call.
+ *
+ * @author John Rizzo - BlackBeltFactory.com
+ */
+public class SingleFlightTest {
+
+    private static final int THREADS = 8;
+
+    /** findEntity() blocks until released, then returns a new instance or fails. */
+    static class BlockingProductUriAnalyzer extends ProductUriAnalyzer {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile RuntimeException failure;
+
+        @Override
+        public Product findEntity(Class<? extends Product> entityClass, String pk) {
+            findEntityCalls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new Product(pk);
+        }
+    }
+
+    private final ExecutorService threads = Executors.newFixedThreadPool(THREADS);  // Outside a request: no identity map.
+    private final BlockingProductUriAnalyzer analyzer = new BlockingProductUriAnalyzer();
+
+    @After
+    public void tearDown() {
+        analyzer.release.countDown();
+        threads.shutdownNow();
+    }
+
+    /** Starts a first load, waits until it is in findEntity(), then starts the others and waits until they wait for it. */
+    private List<Future<Product>> loadConcurrently(final String pk) throws Exception {
+        Callable<Product> load = new Callable<Product>() {
+            @Override
+            public Product call() {
+                return analyzer.find(pk);
+            }
+        };
+        List<Future<Product>> results = new ArrayList<Future<Product>>();
+        results.add(threads.submit(load));
+        assertTrue(analyzer.started.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < THREADS; i++) {
+            results.add(threads.submit(load));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (analyzer.getCoalescedLoadCount() < THREADS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(THREADS - 1, analyzer.getCoalescedLoadCount());
+        return results;
+    }
+
+
+    @Test
+    public void concurrentLoadsCallFindEntityOnce() throws Exception {
+        analyzer.enableSingleFlightLoading(10, TimeUnit.SECONDS);
+        List<Future<Product>> results = loadConcurrently("1");
+        analyzer.release.countDown();
+
+        Product first = results.get(0).get(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        for (Future<Product> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, analyzer.findEntityCalls.get());
+    }
+
+    @Test
+    public void failureIsGivenToEveryWaiter() throws Exception {
+        analyzer.enableSingleFlightLoading(10, TimeUnit.SECONDS);
+        analyzer.failure = new IllegalStateException("DB down");
+        List<Future<Product>> results = loadConcurrently("1");
+        analyzer.release.countDown();
+
+        for (Future<Product> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertSame(analyzer.failure, e.getCause());
+            }
+        }
+        assertEquals(1, analyzer.findEntityCalls.get());
+
+        // The failed load is not in flight anymore: the next one calls findEntity() again.
+        analyzer.failure = null;
+        assertEquals("1", analyzer.find("1").id);
+        assertEquals(2, analyzer.findEntityCalls.get());
+    }
+
+    /** Different keys are not coalesced. */
+    @Test
+    public void differentKeysAreLoadedSeparately() throws Exception {
+        analyzer.enableSingleFlightLoading(10, TimeUnit.SECONDS);
+        analyzer.release.countDown();
+        assertEquals("1", analyzer.find("1").id);
+        assertEquals("2", analyzer.find("2").id);
+        assertEquals(2, analyzer.findEntityCalls.get());
+        assertEquals(0, analyzer.getCoalescedLoadCount());
+    }
+
+    /** A waiter gives up after the timeout and calls findEntity() itself. */
+    @Test
+    public void waiterCallsFindEntityAfterTimeout() throws Exception {
+        analyzer.enableSingleFlightLoading(20, TimeUnit.MILLISECONDS);
+        Future<Product> first = threads.submit(new Callable<Product>() {
+            @Override
+            public Product call() {
+                return analyzer.find("1");
+            }
+        });
+        assertTrue(analyzer.started.await(5, TimeUnit.SECONDS));
+        Future<Product> second = threads.submit(new Callable<Product>() {
+            @Override
+            public Product call() {
+                return analyzer.find("1");
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (analyzer.findEntityCalls.get() < 2 && System.nanoTime() < deadline) {  // The second thread's own call, after the timeout.
+            Thread.sleep(1);
+        }
+        assertEquals(2, analyzer.findEntityCalls.get());
+        assertEquals(1, analyzer.getCoalescedLoadCount());
+
+        analyzer.release.countDown();
+        assertEquals("1", first.get(5, TimeUnit.SECONDS).id);
+        assertEquals("1", second.get(5, TimeUnit.SECONDS).id);
+    }
+}